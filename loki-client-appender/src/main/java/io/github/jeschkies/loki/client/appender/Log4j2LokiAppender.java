@@ -0,0 +1,163 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.jeschkies.loki.client.appender;
+
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.apache.logging.log4j.core.Appender;
+import org.apache.logging.log4j.core.Core;
+import org.apache.logging.log4j.core.Filter;
+import org.apache.logging.log4j.core.Layout;
+import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.StringLayout;
+import org.apache.logging.log4j.core.appender.AbstractAppender;
+import org.apache.logging.log4j.core.config.Property;
+import org.apache.logging.log4j.core.config.plugins.Plugin;
+import org.apache.logging.log4j.core.config.plugins.PluginBuilderAttribute;
+import org.apache.logging.log4j.core.config.plugins.PluginBuilderFactory;
+import org.apache.logging.log4j.core.config.plugins.validation.constraints.Required;
+import org.apache.logging.log4j.core.time.Instant;
+
+/**
+ * A Log4j2 appender that pushes events to Loki.
+ *
+ * <p>Events are handed to a background sender through a lock-free ring buffer, so logging never
+ * blocks on Loki. Events are dropped when the buffer is full.
+ *
+ * <pre>{@code
+ * <Loki name="Loki" url="http://localhost:3100" labels="app=my-app,env=prod">
+ *   <PatternLayout pattern="%m"/>
+ * </Loki>
+ * }</pre>
+ */
+@Plugin(
+    name = "Loki",
+    category = Core.CATEGORY_NAME,
+    elementType = Appender.ELEMENT_TYPE,
+    printObject = true)
+public final class Log4j2LokiAppender extends AbstractAppender {
+  private final LokiSender sender;
+  private final MpscRingBuffer.Translator<LokiSender.Slot, LogEvent> translator = this::translate;
+
+  private Log4j2LokiAppender(
+      String name,
+      Filter filter,
+      Layout<? extends Serializable> layout,
+      boolean ignoreExceptions,
+      Property[] properties,
+      LokiSender sender) {
+    super(name, filter, layout, ignoreExceptions, properties);
+    this.sender = sender;
+  }
+
+  /**
+   * Create a builder for the plugin.
+   *
+   * @return a new builder.
+   */
+  @PluginBuilderFactory
+  public static <B extends Builder<B>> B newBuilder() {
+    return new Builder<B>().asBuilder();
+  }
+
+  /**
+   * Builds the appender from the attributes of the {@code Loki} element.
+   *
+   * @param <B> The builder type.
+   */
+  public static class Builder<B extends Builder<B>> extends AbstractAppender.Builder<B>
+      implements org.apache.logging.log4j.core.util.Builder<Log4j2LokiAppender> {
+    @PluginBuilderAttribute @Required private String url;
+    @PluginBuilderAttribute private String labels;
+    @PluginBuilderAttribute private int bufferSize = 8192;
+    @PluginBuilderAttribute private int batchSize = 1000;
+    @PluginBuilderAttribute private long lingerMillis = 200;
+
+    public B setUrl(String url) {
+      this.url = url;
+      return asBuilder();
+    }
+
+    public B setLabels(String labels) {
+      this.labels = labels;
+      return asBuilder();
+    }
+
+    public B setBufferSize(int bufferSize) {
+      this.bufferSize = bufferSize;
+      return asBuilder();
+    }
+
+    public B setBatchSize(int batchSize) {
+      this.batchSize = batchSize;
+      return asBuilder();
+    }
+
+    public B setLingerMillis(long lingerMillis) {
+      this.lingerMillis = lingerMillis;
+      return asBuilder();
+    }
+
+    @Override
+    public Log4j2LokiAppender build() {
+      return new Log4j2LokiAppender(
+          getName(),
+          getFilter(),
+          getLayout(),
+          isIgnoreExceptions(),
+          getPropertyArray(),
+          new LokiSender(
+              url,
+              LokiSender.parseLabels(labels),
+              bufferSize,
+              batchSize,
+              lingerMillis,
+              e -> LOGGER.error("Could not push logs to Loki", e)));
+    }
+  }
+
+  /** Returns the number of events dropped because the buffer was full. */
+  public long getDroppedEvents() {
+    return sender.getDroppedEvents();
+  }
+
+  @Override
+  public void append(LogEvent event) {
+    sender.offer(translator, event);
+  }
+
+  @Override
+  public boolean stop(long timeout, TimeUnit timeUnit) {
+    setStopping();
+    boolean stopped = super.stop(timeout, timeUnit, false);
+    sender.close();
+    setStopped();
+    return stopped;
+  }
+
+  private void translate(LokiSender.Slot slot, LogEvent event) {
+    Instant instant = event.getInstant();
+    slot.timestamp = instant.getEpochSecond() * 1_000_000_000L + instant.getNanoOfSecond();
+    slot.labels = sender.labelsFor(event.getLevel().name());
+    Layout<? extends Serializable> layout = getLayout();
+    if (layout instanceof StringLayout stringLayout) {
+      slot.line = stringLayout.toSerializable(event);
+    } else if (layout != null) {
+      slot.line = new String(layout.toByteArray(event), StandardCharsets.UTF_8);
+    } else {
+      slot.line = event.getMessage().getFormattedMessage();
+    }
+  }
+}
@@ -0,0 +1,115 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.jeschkies.loki.client.appender;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Layout;
+import ch.qos.logback.core.UnsynchronizedAppenderBase;
+import java.time.Instant;
+
+/**
+ * A Logback appender that pushes events to Loki.
+ *
+ * <p>Events are handed to a background sender through a lock-free ring buffer, so logging never
+ * blocks on Loki. Events are dropped when the buffer is full.
+ *
+ * <pre>{@code
+ * <appender name="LOKI" class="io.github.jeschkies.loki.client.appender.LogbackLokiAppender">
+ *   <url>http://localhost:3100</url>
+ *   <labels>app=my-app,env=prod</labels>
+ * </appender>
+ * }</pre>
+ */
+public class LogbackLokiAppender extends UnsynchronizedAppenderBase<ILoggingEvent> {
+  private final MpscRingBuffer.Translator<LokiSender.Slot, ILoggingEvent> translator =
+      this::translate;
+  private String url;
+  private String labels;
+  private int bufferSize = 8192;
+  private int batchSize = 1000;
+  private long lingerMillis = 200;
+  private Layout<ILoggingEvent> layout;
+  private LokiSender sender;
+
+  public void setUrl(String url) {
+    this.url = url;
+  }
+
+  public void setLabels(String labels) {
+    this.labels = labels;
+  }
+
+  public void setBufferSize(int bufferSize) {
+    this.bufferSize = bufferSize;
+  }
+
+  public void setBatchSize(int batchSize) {
+    this.batchSize = batchSize;
+  }
+
+  public void setLingerMillis(long lingerMillis) {
+    this.lingerMillis = lingerMillis;
+  }
+
+  public void setLayout(Layout<ILoggingEvent> layout) {
+    this.layout = layout;
+  }
+
+  /** Returns the number of events dropped because the buffer was full. */
+  public long getDroppedEvents() {
+    return sender != null ? sender.getDroppedEvents() : 0;
+  }
+
+  @Override
+  public void start() {
+    if (url == null) {
+      addError("No url set for the Loki appender named " + name);
+      return;
+    }
+    try {
+      sender =
+          new LokiSender(
+              url,
+              LokiSender.parseLabels(labels),
+              bufferSize,
+              batchSize,
+              lingerMillis,
+              e -> addError("Could not push logs to Loki", e));
+    } catch (IllegalArgumentException e) {
+      addError("Invalid configuration of the Loki appender named " + name, e);
+      return;
+    }
+    super.start();
+  }
+
+  @Override
+  public void stop() {
+    super.stop();
+    if (sender != null) {
+      sender.close();
+    }
+  }
+
+  @Override
+  protected void append(ILoggingEvent event) {
+    sender.offer(translator, event);
+  }
+
+  private void translate(LokiSender.Slot slot, ILoggingEvent event) {
+    Instant instant = event.getInstant();
+    slot.timestamp = instant.getEpochSecond() * 1_000_000_000L + instant.getNano();
+    slot.labels = sender.labelsFor(event.getLevel().toString());
+    slot.line = layout != null ? layout.doLayout(event) : event.getFormattedMessage();
+  }
+}
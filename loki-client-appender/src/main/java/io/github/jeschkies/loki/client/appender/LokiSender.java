@@ -0,0 +1,253 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.jeschkies.loki.client.appender;
+
+import io.github.jeschkies.loki.client.ExponentialBackoffRetryPolicy;
+import io.github.jeschkies.loki.client.LokiClient;
+import io.github.jeschkies.loki.client.LokiClientConfig;
+import io.github.jeschkies.loki.client.LokiClientException;
+import io.github.jeschkies.loki.client.PushStream;
+import io.github.jeschkies.loki.client.model.LogEntry;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Hands log events from application threads to a sender thread that pushes them in batches.
+ *
+ * <p>Application threads only copy the timestamp, formatted line and labels into a preallocated
+ * slot of a {@link MpscRingBuffer}. They never take a lock or wait for Loki. Events are dropped
+ * when the buffer is full. The sender thread pushes a batch once it is full or the linger time
+ * expired. In between it parks, and an application thread only unparks it when its event starts a
+ * batch or fills one.
+ */
+final class LokiSender implements Closeable {
+  /**
+   * A reusable ring buffer slot. Translators set the line last, so that a slot without a line
+   * marks an event whose translation failed.
+   */
+  static final class Slot {
+    long timestamp;
+    String line;
+    Map<String, String> labels;
+  }
+
+  private static final long NO_WAKE_UP = Long.MAX_VALUE;
+
+  private final LokiClient client;
+  private final MpscRingBuffer<Slot> ring;
+  private final int batchSize;
+  private final long lingerNanos;
+  private final Consumer<Exception> errorHandler;
+  private final Map<String, String> labels;
+  private final Map<String, Map<String, String>> labelsByLevel = new ConcurrentHashMap<>();
+  private final Function<String, Map<String, String>> withLevel = this::withLevel;
+  private final AtomicLong droppedEvents = new AtomicLong();
+  private final AtomicLong failedEvents = new AtomicLong();
+  private final Thread thread;
+  private volatile boolean closed = false;
+  // The ring buffer tail at which a producer unparks the sender.
+  private volatile long wakeUpTail = NO_WAKE_UP;
+
+  // Only accessed by the sender thread.
+  private final Map<Map<String, String>, List<LogEntry>> batch = new LinkedHashMap<>();
+  private final Consumer<Slot> collector = this::collect;
+  private int pending;
+  private long batchStart;
+
+  /**
+   * Create and start a sender.
+   *
+   * @param url The Loki base URL.
+   * @param labels The labels of all events. A {@code level} label is added per event.
+   * @param bufferSize The number of events the ring buffer holds.
+   * @param batchSize The maximum number of events in one push request.
+   * @param lingerMillis How long the sender waits for more events before it pushes a partial batch.
+   * @param errorHandler Reports failed pushes to the logging framework's status logger.
+   */
+  LokiSender(
+      String url,
+      Map<String, String> labels,
+      int bufferSize,
+      int batchSize,
+      long lingerMillis,
+      Consumer<Exception> errorHandler) {
+    this.client =
+        new LokiClient(
+            LokiClientConfig.builder(URI.create(url))
+                .retryPolicy(new ExponentialBackoffRetryPolicy(null, null, 3))
+                .build());
+    this.labels = new LinkedHashMap<>(labels);
+    this.ring = new MpscRingBuffer<>(bufferSize, Slot::new);
+    this.batchSize = batchSize;
+    this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+    this.errorHandler = errorHandler;
+    this.thread = new Thread(this::run, "loki-appender-sender");
+    this.thread.setDaemon(true);
+    this.thread.start();
+  }
+
+  /**
+   * Parse labels in the form {@code app=foo,env=prod}.
+   *
+   * @param labels The comma separated label pairs.
+   * @return the labels.
+   * @throws IllegalArgumentException when a pair has no {@code =}.
+   */
+  static Map<String, String> parseLabels(String labels) {
+    Map<String, String> parsed = new LinkedHashMap<>();
+    if (labels == null || labels.isBlank()) {
+      return parsed;
+    }
+    for (String pair : labels.split(",")) {
+      int separator = pair.indexOf('=');
+      if (separator <= 0) {
+        throw new IllegalArgumentException("Invalid label " + pair + ", expected name=value");
+      }
+      parsed.put(pair.substring(0, separator).trim(), pair.substring(separator + 1).trim());
+    }
+    return parsed;
+  }
+
+  /**
+   * Publish an event without blocking.
+   *
+   * @param translator Copies the event into a slot. It must be a non-capturing lambda or method
+   *     reference so that no object is allocated per event.
+   * @param event The logging framework's event.
+   * @return false if the buffer was full and the event was dropped.
+   */
+  <E> boolean offer(MpscRingBuffer.Translator<Slot, E> translator, E event) {
+    if (ring.offer(translator, event)) {
+      if (ring.tail() >= wakeUpTail) {
+        LockSupport.unpark(thread);
+      }
+      return true;
+    }
+    droppedEvents.incrementAndGet();
+    return false;
+  }
+
+  /** Returns the labels of events with the given level. */
+  Map<String, String> labelsFor(String level) {
+    Map<String, String> levelLabels = labelsByLevel.get(level);
+    return levelLabels != null ? levelLabels : labelsByLevel.computeIfAbsent(level, withLevel);
+  }
+
+  /** Returns the number of events dropped because the buffer was full. */
+  long getDroppedEvents() {
+    return droppedEvents.get();
+  }
+
+  /** Returns the number of events that could not be pushed. */
+  long getFailedEvents() {
+    return failedEvents.get();
+  }
+
+  /** Push the buffered events and stop the sender thread. */
+  @Override
+  public void close() {
+    closed = true;
+    LockSupport.unpark(thread);
+    try {
+      thread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private Map<String, String> withLevel(String level) {
+    Map<String, String> levelLabels = new LinkedHashMap<>(labels);
+    levelLabels.put("level", level);
+    return Collections.unmodifiableMap(levelLabels);
+  }
+
+  private void run() {
+    while (true) {
+      // Read the flag before draining, so events published before close() are still sent.
+      boolean stopping = closed;
+      int drained = ring.drain(collector, batchSize - pending);
+      if (pending > 0
+          && (pending >= batchSize || stopping || System.nanoTime() - batchStart >= lingerNanos)) {
+        send();
+      }
+      if (stopping && drained == 0 && pending == 0) {
+        return;
+      }
+      if (drained == 0) {
+        park();
+      }
+    }
+  }
+
+  /** Park until the next event, a full batch, the end of the linger time or close. */
+  private void park() {
+    long wanted = pending == 0 ? 1 : Math.min(batchSize - pending, ring.capacity() / 2);
+    long wakeUpAt = ring.head() + wanted;
+    wakeUpTail = wakeUpAt;
+    // Check the tail after publishing the wake-up position, so that a producer either sees the
+    // position or its event is seen here.
+    if (ring.tail() < wakeUpAt && !closed) {
+      if (pending == 0) {
+        LockSupport.park(this);
+      } else {
+        LockSupport.parkNanos(this, batchStart + lingerNanos - System.nanoTime());
+      }
+    }
+    wakeUpTail = NO_WAKE_UP;
+  }
+
+  private void collect(Slot slot) {
+    if (slot.line == null) {
+      // The translator failed on the application thread.
+      return;
+    }
+    if (pending == 0) {
+      batchStart = System.nanoTime();
+    }
+    batch
+        .computeIfAbsent(slot.labels, k -> new ArrayList<>())
+        .add(new LogEntry(slot.timestamp, slot.line));
+    pending++;
+    // Let the slot not keep the line alive until it is reused.
+    slot.line = null;
+  }
+
+  private void send() {
+    List<PushStream> streams = new ArrayList<>(batch.size());
+    for (var entry : batch.entrySet()) {
+      streams.add(new PushStream(entry.getKey(), entry.getValue()));
+    }
+    try {
+      client.push(streams);
+    } catch (IOException | LokiClientException e) {
+      failedEvents.addAndGet(pending);
+      errorHandler.accept(e);
+    } finally {
+      batch.clear();
+      pending = 0;
+    }
+  }
+}
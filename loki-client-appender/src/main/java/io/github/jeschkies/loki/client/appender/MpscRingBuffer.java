@@ -0,0 +1,136 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.jeschkies.loki.client.appender;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * A bounded lock-free ring buffer for many producers and one consumer.
+ *
+ * <p>The slots are allocated up front and reused. A producer claims a sequence with a
+ * compare-and-set on the tail, fills the slot with a {@link Translator} and publishes it by
+ * advancing the slot's sequence. The consumer reads published slots in order and hands them back
+ * to the producers by advancing the sequence by the capacity. Publishing never blocks and fails
+ * when the buffer is full.
+ *
+ * @param <E> The type of the slots.
+ */
+final class MpscRingBuffer<E> {
+  /**
+   * Copies an event into a slot on the producer thread. The slot is published even if the
+   * translator throws, so the consumer must tolerate partially filled slots.
+   */
+  @FunctionalInterface
+  interface Translator<E, A> {
+    void translate(E slot, A argument);
+  }
+
+  private final int mask;
+  private final Object[] slots;
+  // sequence == position: free for the producer of that position.
+  // sequence == position + 1: published for the consumer.
+  private final AtomicLongArray sequences;
+  private final AtomicLong tail = new AtomicLong();
+  private long head;
+
+  /**
+   * Create a ring buffer.
+   *
+   * @param capacity The minimum number of slots. It is rounded up to a power of two.
+   * @param factory Creates the slots.
+   */
+  MpscRingBuffer(int capacity, Supplier<E> factory) {
+    int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+    this.mask = size - 1;
+    this.slots = new Object[size];
+    this.sequences = new AtomicLongArray(size);
+    for (int i = 0; i < size; i++) {
+      slots[i] = factory.get();
+      sequences.set(i, i);
+    }
+  }
+
+  int capacity() {
+    return slots.length;
+  }
+
+  /** Returns the position of the next slot to claim, i.e. the number of claimed slots. */
+  long tail() {
+    return tail.get();
+  }
+
+  /** Returns the position of the next slot to read. Must only be called by the consumer thread. */
+  long head() {
+    return head;
+  }
+
+  /**
+   * Claim a slot, fill it and publish it.
+   *
+   * @param translator Copies the argument into the slot.
+   * @param argument The event to copy.
+   * @return false if the buffer is full.
+   */
+  @SuppressWarnings("unchecked")
+  <A> boolean offer(Translator<E, A> translator, A argument) {
+    long position = tail.get();
+    while (true) {
+      int index = (int) (position & mask);
+      long sequence = sequences.get(index);
+      if (sequence == position) {
+        if (tail.compareAndSet(position, position + 1)) {
+          try {
+            translator.translate((E) slots[index], argument);
+          } finally {
+            // A claimed slot must always be published or the consumer would stall on it.
+            sequences.lazySet(index, position + 1);
+          }
+          return true;
+        }
+        position = tail.get();
+      } else if (sequence < position) {
+        // The consumer has not released the slot of the previous round yet.
+        return false;
+      } else {
+        position = tail.get();
+      }
+    }
+  }
+
+  /**
+   * Hand published slots to the handler in order. Must only be called by the consumer thread.
+   *
+   * @param handler Reads a slot. The slot is reused once the handler returns.
+   * @param limit The maximum number of slots to read.
+   * @return the number of slots read.
+   */
+  @SuppressWarnings("unchecked")
+  int drain(Consumer<E> handler, int limit) {
+    int drained = 0;
+    while (drained < limit) {
+      int index = (int) (head & mask);
+      if (sequences.get(index) != head + 1) {
+        break;
+      }
+      handler.accept((E) slots[index]);
+      sequences.lazySet(index, head + slots.length);
+      head++;
+      drained++;
+    }
+    return drained;
+  }
+}
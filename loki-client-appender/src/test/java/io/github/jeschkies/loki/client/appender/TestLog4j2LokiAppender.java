@@ -0,0 +1,106 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.jeschkies.loki.client.appender;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.core.LoggerContext;
+import org.apache.logging.log4j.core.config.ConfigurationSource;
+import org.apache.logging.log4j.core.config.xml.XmlConfiguration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class TestLog4j2LokiAppender {
+  private MockWebServer server;
+  private LoggerContext context;
+
+  @BeforeEach
+  void setup() throws IOException {
+    server = new MockWebServer();
+    server.start();
+    context = new LoggerContext("test");
+  }
+
+  @AfterEach
+  void teardown() throws IOException {
+    context.stop();
+    server.shutdown();
+  }
+
+  @Test
+  void testPushFullBatch() throws Exception {
+    server.enqueue(new MockResponse().setResponseCode(204));
+    Logger logger = start("labels=\"app=foo, env=test\" batchSize=\"2\" lingerMillis=\"60000\"");
+
+    assertThat(context.getConfiguration().getAppender("Loki"))
+        .isInstanceOf(Log4j2LokiAppender.class);
+
+    logger.info("hello {}", "world");
+    logger.debug("filtered");
+    logger.warn("careful");
+
+    // The batch is full, so it is pushed long before the linger time expired.
+    RecordedRequest request = server.takeRequest(5, TimeUnit.SECONDS);
+    assertThat(request).isNotNull();
+    assertThat(request.getPath()).isEqualTo("/loki/api/v1/push");
+    assertThat(request.getBody().readUtf8())
+        .contains("{\"app\":\"foo\",\"env\":\"test\",\"level\":\"INFO\"}")
+        .contains("{\"app\":\"foo\",\"env\":\"test\",\"level\":\"WARN\"}")
+        .contains("\"INFO hello world\"")
+        .contains("\"WARN careful\"")
+        .doesNotContain("filtered");
+
+    context.stop();
+    assertThat(server.getRequestCount()).isEqualTo(1);
+  }
+
+  @Test
+  void testPushAfterLinger() throws Exception {
+    server.enqueue(new MockResponse().setResponseCode(204));
+    Logger logger = start("labels=\"app=foo\" lingerMillis=\"100\"");
+
+    logger.info("lonely");
+
+    RecordedRequest request = server.takeRequest(5, TimeUnit.SECONDS);
+    assertThat(request).isNotNull();
+    assertThat(request.getBody().readUtf8())
+        .contains("{\"app\":\"foo\",\"level\":\"INFO\"}")
+        .contains("\"INFO lonely\"");
+  }
+
+  private Logger start(String attributes) throws IOException {
+    String xml =
+        "<Configuration status=\"warn\"><Appenders>"
+            + "<Loki name=\"Loki\" url=\""
+            + server.url("/")
+            + "\" "
+            + attributes
+            + "><PatternLayout pattern=\"%level %m\"/></Loki>"
+            + "</Appenders><Loggers><Root level=\"info\"><AppenderRef ref=\"Loki\"/></Root>"
+            + "</Loggers></Configuration>";
+    ConfigurationSource source =
+        new ConfigurationSource(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+    context.start(new XmlConfiguration(context, source));
+    return context.getLogger("test");
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.jeschkies.loki.client.appender;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class TestLogbackLokiAppender {
+  private MockWebServer server;
+  private LoggerContext context;
+
+  @BeforeEach
+  void setup() throws IOException {
+    server = new MockWebServer();
+    server.start();
+    context = new LoggerContext();
+  }
+
+  @AfterEach
+  void teardown() throws IOException {
+    context.stop();
+    server.shutdown();
+  }
+
+  @Test
+  void testPushesBatchOnStop() throws Exception {
+    server.enqueue(new MockResponse().setResponseCode(204));
+    LogbackLokiAppender appender = new LogbackLokiAppender();
+    appender.setContext(context);
+    appender.setName("loki");
+    appender.setUrl(server.url("/").toString());
+    appender.setLabels("app=foo");
+    appender.setLingerMillis(60_000);
+    appender.start();
+    Logger logger = context.getLogger("test");
+    logger.setLevel(Level.INFO);
+    logger.addAppender(appender);
+
+    logger.info("hello {}", "world");
+    logger.debug("filtered");
+    logger.warn("careful");
+    appender.stop();
+
+    RecordedRequest request = server.takeRequest(5, TimeUnit.SECONDS);
+    assertThat(request.getPath()).isEqualTo("/loki/api/v1/push");
+    String body = request.getBody().readUtf8();
+    assertThat(body)
+        .contains("{\"app\":\"foo\",\"level\":\"INFO\"}")
+        .contains("{\"app\":\"foo\",\"level\":\"WARN\"}")
+        .contains("\"hello world\"")
+        .contains("\"careful\"")
+        .doesNotContain("filtered");
+    assertThat(server.getRequestCount()).isEqualTo(1);
+    assertThat(appender.getDroppedEvents()).isZero();
+  }
+}
@@ -0,0 +1,104 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.jeschkies.loki.client.appender;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import org.junit.jupiter.api.Test;
+
+public class TestMpscRingBuffer {
+  private static final class Slot {
+    long value;
+  }
+
+  @Test
+  void testCapacityIsRoundedUpToPowerOfTwo() {
+    assertThat(new MpscRingBuffer<>(1, Slot::new).capacity()).isEqualTo(2);
+    assertThat(new MpscRingBuffer<>(8, Slot::new).capacity()).isEqualTo(8);
+    assertThat(new MpscRingBuffer<>(9, Slot::new).capacity()).isEqualTo(16);
+  }
+
+  @Test
+  void testOfferFailsWhenFull() {
+    MpscRingBuffer<Slot> ring = new MpscRingBuffer<>(4, Slot::new);
+    for (long i = 0; i < 4; i++) {
+      assertThat(ring.offer((slot, value) -> slot.value = value, i)).isTrue();
+    }
+    assertThat(ring.offer((slot, value) -> slot.value = value, 4L)).isFalse();
+
+    List<Long> values = new ArrayList<>();
+    assertThat(ring.drain(slot -> values.add(slot.value), 2)).isEqualTo(2);
+    assertThat(ring.offer((slot, value) -> slot.value = value, 4L)).isTrue();
+    assertThat(ring.drain(slot -> values.add(slot.value), Integer.MAX_VALUE)).isEqualTo(3);
+    assertThat(values).containsExactly(0L, 1L, 2L, 3L, 4L);
+  }
+
+  @Test
+  void testConcurrentProducers() throws InterruptedException {
+    int producers = 4;
+    int perProducer = 10_000;
+    MpscRingBuffer<Slot> ring = new MpscRingBuffer<>(64, Slot::new);
+    CountDownLatch start = new CountDownLatch(1);
+    List<Thread> threads = new ArrayList<>();
+    for (int p = 0; p < producers; p++) {
+      long base = (long) p * perProducer;
+      Thread thread =
+          new Thread(
+              () -> {
+                try {
+                  start.await();
+                } catch (InterruptedException e) {
+                  return;
+                }
+                for (long i = base; i < base + perProducer; i++) {
+                  while (!ring.offer((slot, value) -> slot.value = value, i)) {
+                    Thread.yield();
+                  }
+                }
+              });
+      thread.start();
+      threads.add(thread);
+    }
+    start.countDown();
+
+    long[] next = new long[producers];
+    for (int p = 0; p < producers; p++) {
+      next[p] = (long) p * perProducer;
+    }
+    int received = 0;
+    boolean[] ordered = {true};
+    while (received < producers * perProducer) {
+      received +=
+          ring.drain(
+              slot -> {
+                int producer = (int) (slot.value / perProducer);
+                ordered[0] &= slot.value == next[producer];
+                next[producer] = slot.value + 1;
+              },
+              Integer.MAX_VALUE);
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    // Every value arrived exactly once and in the order of its producer.
+    assertThat(ordered[0]).isTrue();
+    for (int p = 0; p < producers; p++) {
+      assertThat(next[p]).isEqualTo((long) (p + 1) * perProducer);
+    }
+  }
+}
@@ -0,0 +1,37 @@
+plugins {
+    id("java")
+    checkstyle
+    id("com.diffplug.spotless") version "6.25.0"
+    id("me.champeau.jmh") version "0.7.2"
+}
+
+group = "io.github.jeschkies"
+version = "0.0.2"
+
+repositories {
+    mavenCentral()
+}
+
+dependencies {
+    jmhImplementation(project(":loki-client"))
+    jmhImplementation("com.fasterxml.jackson.core:jackson-databind:2.17.2")
+    jmhImplementation("com.squareup.okhttp3:okhttp:4.12.0")
+}
+
+checkstyle {
+    toolVersion = "10.18.1"
+}
+
+spotless {
+    java {
+        googleJavaFormat()
+    }
+}
+
+jmh {
+    jmhVersion = "1.37"
+    fork = 1
+    warmupIterations = 3
+    iterations = 5
+    profilers = listOf("gc")
+}
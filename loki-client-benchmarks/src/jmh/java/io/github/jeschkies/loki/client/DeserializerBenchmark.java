@@ -0,0 +1,69 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.jeschkies.loki.client;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.jeschkies.loki.client.model.LogEntry;
+import io.github.jeschkies.loki.client.model.MetricPoint;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Measures the custom {@code [ts, value]} pair deserializers in isolation. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DeserializerBenchmark {
+  @Param({"1000", "100000"})
+  public int entries;
+
+  private final ObjectMapper mapper = new ObjectMapper();
+  private byte[] logEntries;
+  private byte[] metricPoints;
+
+  @Setup
+  public void setup() {
+    StringBuilder logs = new StringBuilder("[");
+    StringBuilder points = new StringBuilder("[");
+    for (int i = 0; i < entries; i++) {
+      if (i > 0) {
+        logs.append(',');
+        points.append(',');
+      }
+      logs.append("[\"").append(1722876490884664050L + i).append("\",\"line ").append(i);
+      logs.append("\"]");
+      points.append('[').append(1722871416 + i * 14).append(",\"").append(i % 1000).append("\"]");
+    }
+    logEntries = logs.append(']').toString().getBytes(StandardCharsets.UTF_8);
+    metricPoints = points.append(']').toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Benchmark
+  public LogEntry[] logEntries() throws IOException {
+    return mapper.readValue(logEntries, LogEntry[].class);
+  }
+
+  @Benchmark
+  public MetricPoint[] metricPoints() throws IOException {
+    return mapper.readValue(metricPoints, MetricPoint[].class);
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.jeschkies.loki.client;
+
+import io.github.jeschkies.loki.client.model.LogEntry;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/** Generates realistic query responses and push batches for the benchmarks. */
+final class Payloads {
+  private static final long START_NANOS = 1722876490884664050L;
+  private static final long STEP_SECONDS = 14;
+
+  private Payloads() {
+    throw new UnsupportedOperationException("This is a utility class and cannot be instantiated");
+  }
+
+  /** Returns a streams query response with {@code streams} streams of {@code entries} each. */
+  static byte[] streamsResponse(int streams, int entries) {
+    StringBuilder json = new StringBuilder();
+    json.append("{\"status\":\"success\",\"data\":{\"resultType\":\"streams\",\"result\":[");
+    for (int s = 0; s < streams; s++) {
+      if (s > 0) {
+        json.append(',');
+      }
+      json.append("{\"stream\":{\"service_name\":\"service-")
+          .append(s)
+          .append("\",\"detected_level\":\"info\",\"host\":\"fedora\"},\"values\":[");
+      for (int e = 0; e < entries; e++) {
+        if (e > 0) {
+          json.append(',');
+        }
+        json.append("[\"")
+            .append(START_NANOS + e * 1000L)
+            .append("\",\"")
+            .append(logLine(e))
+            .append("\"]");
+      }
+      json.append("]}");
+    }
+    json.append("]}}");
+    return json.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  /** Returns a matrix query response with {@code series} series of {@code points} each. */
+  static byte[] matrixResponse(int series, int points) {
+    Random random = new Random(42);
+    StringBuilder json = new StringBuilder();
+    json.append("{\"status\":\"success\",\"data\":{\"resultType\":\"matrix\",\"result\":[");
+    for (int s = 0; s < series; s++) {
+      if (s > 0) {
+        json.append(',');
+      }
+      json.append("{\"metric\":{\"level\":\"level-").append(s).append("\"},\"values\":[");
+      for (int p = 0; p < points; p++) {
+        if (p > 0) {
+          json.append(',');
+        }
+        json.append('[')
+            .append(START_NANOS / 1_000_000_000L + p * STEP_SECONDS)
+            .append(",\"")
+            .append(random.nextInt(10000) / 10.0)
+            .append("\"]");
+      }
+      json.append("]}");
+    }
+    json.append("]}}");
+    return json.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  /** Returns a push batch of {@code streams} label sets with {@code entries} lines each. */
+  static Map<Map<String, String>, List<LogEntry>> pushBatch(int streams, int entries) {
+    Map<Map<String, String>, List<LogEntry>> batch = new LinkedHashMap<>();
+    for (int s = 0; s < streams; s++) {
+      List<LogEntry> values = new ArrayList<>(entries);
+      for (int e = 0; e < entries; e++) {
+        LogEntry entry = new LogEntry();
+        entry.setTs(START_NANOS + e * 1000L);
+        entry.setLine(logLine(e));
+        values.add(entry);
+      }
+      batch.put(Map.of("service_name", "service-" + s, "host", "fedora"), values);
+    }
+    return batch;
+  }
+
+  private static String logLine(int i) {
+    return "logger=settings t=2024-08-05T16:48:10.884581625Z level=info msg=Starting request_id="
+        + i
+        + " duration=12.5ms status=200 path=/api/v1/query";
+  }
+}
@@ -0,0 +1,62 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.jeschkies.loki.client;
+
+import io.github.jeschkies.loki.client.model.LogEntry;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import okio.Buffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Measures encoding push request bodies. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PushEncodingBenchmark {
+  @Param({"1", "10"})
+  public int streams;
+
+  @Param({"1", "1000"})
+  public int entries;
+
+  private Map<Map<String, String>, List<LogEntry>> batch;
+
+  @Setup
+  public void setup() {
+    batch = Payloads.pushBatch(streams, entries);
+  }
+
+  @Benchmark
+  public long json() throws IOException {
+    Buffer sink = new Buffer();
+    new JsonPushBody(batch).writeTo(sink);
+    long size = sink.size();
+    sink.clear();
+    return size;
+  }
+
+  @Benchmark
+  public byte[] protobuf() throws IOException {
+    return ProtobufPushEncoder.encode(batch);
+  }
+}
@@ -0,0 +1,79 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.jeschkies.loki.client;
+
+import io.github.jeschkies.loki.client.model.QueryResult;
+import io.github.jeschkies.loki.client.model.QueryResultReader;
+import io.github.jeschkies.loki.client.model.QueryResultVisitor;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** Measures parsing query responses of different sizes. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class QueryResultBenchmark {
+  @Param({"streams", "matrix"})
+  public String resultType;
+
+  @Param({"10", "100"})
+  public int series;
+
+  @Param({"100", "1000"})
+  public int entries;
+
+  private byte[] response;
+
+  @Setup
+  public void setup() {
+    response =
+        resultType.equals("streams")
+            ? Payloads.streamsResponse(series, entries)
+            : Payloads.matrixResponse(series, entries);
+  }
+
+  @Benchmark
+  public QueryResult fromJson() throws IOException {
+    return QueryResult.fromJSON(new ByteArrayInputStream(response));
+  }
+
+  @Benchmark
+  public void streamingReader(Blackhole blackhole) throws IOException {
+    QueryResultReader.read(
+        new ByteArrayInputStream(response),
+        new QueryResultVisitor() {
+          @Override
+          public void logEntry(long ts, String line) {
+            blackhole.consume(ts);
+            blackhole.consume(line);
+          }
+
+          @Override
+          public void metricPoint(long ts, double value) {
+            blackhole.consume(ts);
+            blackhole.consume(value);
+          }
+        });
+  }
+}
@@ -0,0 +1,189 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.jeschkies.loki.client.micrometer;
+
+import io.github.jeschkies.loki.client.BatchingPusher;
+import io.github.jeschkies.loki.client.LokiClientMetrics;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+/**
+ * Records the client metrics with Micrometer.
+ *
+ * <p>Request latencies are published as percentile histograms tagged with the operation and the
+ * status code. Failed requests, i.e. status codes of 400 and above or -1 without a response, are
+ * additionally counted in {@code loki.client.errors}.
+ */
+public class MicrometerLokiClientMetrics implements LokiClientMetrics {
+  /** The meters of requests with one status code. Errors is null for successful requests. */
+  private record RequestMeters(Timer latency, Counter errors) {}
+
+  private final MeterRegistry registry;
+  private final Tags tags;
+  private final Map<Operation, DistributionSummary> requestBytes = new EnumMap<>(Operation.class);
+  private final Map<Operation, DistributionSummary> responseBytes = new EnumMap<>(Operation.class);
+  private final Map<Operation, Counter> retries = new EnumMap<>(Operation.class);
+  private final Map<Operation, ConcurrentMap<Integer, RequestMeters>> requests =
+      new EnumMap<>(Operation.class);
+  private final Timer parseTime;
+  private final Counter linesPushed;
+  private final Timer connectTime;
+
+  public MicrometerLokiClientMetrics(MeterRegistry registry) {
+    this(registry, Tags.empty());
+  }
+
+  /**
+   * Create metrics that are registered with the given tags, e.g. to tell clients apart.
+   *
+   * @param registry The registry of the meters.
+   * @param tags Tags added to all meters.
+   */
+  public MicrometerLokiClientMetrics(MeterRegistry registry, Tags tags) {
+    this.registry = registry;
+    this.tags = tags;
+    for (Operation operation : Operation.values()) {
+      Tags operationTags = tags.and("operation", name(operation));
+      requestBytes.put(
+          operation,
+          DistributionSummary.builder("loki.client.request.size")
+              .baseUnit("bytes")
+              .tags(operationTags)
+              .register(registry));
+      responseBytes.put(
+          operation,
+          DistributionSummary.builder("loki.client.response.size")
+              .baseUnit("bytes")
+              .tags(operationTags)
+              .register(registry));
+      retries.put(
+          operation, Counter.builder("loki.client.retries").tags(operationTags).register(registry));
+      requests.put(operation, new ConcurrentHashMap<>());
+    }
+    this.parseTime =
+        Timer.builder("loki.client.query.parse")
+            .tags(tags)
+            .publishPercentileHistogram()
+            .register(registry);
+    this.linesPushed = Counter.builder("loki.client.pushed.lines").tags(tags).register(registry);
+    this.connectTime = Timer.builder("loki.client.connect").tags(tags).register(registry);
+  }
+
+  /**
+   * Register the queue depth and the dropped and failed lines of a pusher.
+   *
+   * @param pusher The pusher to monitor. It is referenced weakly.
+   * @param registry The registry of the meters.
+   * @param tags Tags added to all meters.
+   */
+  public static void monitor(BatchingPusher pusher, MeterRegistry registry, Tags tags) {
+    Gauge.builder("loki.client.pusher.queue.depth", pusher, BatchingPusher::getQueueDepth)
+        .tags(tags)
+        .register(registry);
+    FunctionCounter.builder("loki.client.pusher.dropped", pusher, BatchingPusher::getDroppedLines)
+        .tags(tags)
+        .register(registry);
+    FunctionCounter.builder("loki.client.pusher.failed", pusher, BatchingPusher::getFailedLines)
+        .tags(tags)
+        .register(registry);
+  }
+
+  @Override
+  public void requestCompleted(Operation operation, int statusCode, long latencyNanos) {
+    RequestMeters meters =
+        requests
+            .get(operation)
+            .computeIfAbsent(statusCode, status -> registerRequestMeters(operation, status));
+    meters.latency().record(latencyNanos, TimeUnit.NANOSECONDS);
+    if (meters.errors() != null) {
+      meters.errors().increment();
+    }
+  }
+
+  private RequestMeters registerRequestMeters(Operation operation, int statusCode) {
+    Tags requestTags =
+        tags.and("operation", name(operation), "status", Integer.toString(statusCode));
+    Timer latency =
+        Timer.builder("loki.client.requests")
+            .tags(requestTags)
+            .publishPercentileHistogram()
+            .register(registry);
+    Counter errors =
+        statusCode < 0 || statusCode >= 400
+            ? registry.counter("loki.client.errors", requestTags)
+            : null;
+    return new RequestMeters(latency, errors);
+  }
+
+  @Override
+  public void requestBytes(Operation operation, long bytes) {
+    requestBytes.get(operation).record(bytes);
+  }
+
+  @Override
+  public void responseBytes(Operation operation, long bytes) {
+    responseBytes.get(operation).record(bytes);
+  }
+
+  @Override
+  public void requestRetried(Operation operation) {
+    retries.get(operation).increment();
+  }
+
+  @Override
+  public void queryParsed(long parseNanos) {
+    parseTime.record(parseNanos, TimeUnit.NANOSECONDS);
+  }
+
+  @Override
+  public void linesPushed(int lines) {
+    linesPushed.increment(lines);
+  }
+
+  @Override
+  public void connectionOpened(long connectNanos) {
+    connectTime.record(connectNanos, TimeUnit.NANOSECONDS);
+  }
+
+  @Override
+  public void bindConnectionPool(
+      String pool, IntSupplier connectionCount, IntSupplier idleConnectionCount) {
+    // Clients that share a pool register the same gauges, of which Micrometer keeps the first.
+    // The suppliers are only referenced by the gauges, so they must not be weak references.
+    Gauge.builder("loki.client.connections", connectionCount, IntSupplier::getAsInt)
+        .tags(tags.and("pool", pool, "state", "open"))
+        .strongReference(true)
+        .register(registry);
+    Gauge.builder("loki.client.connections", idleConnectionCount, IntSupplier::getAsInt)
+        .tags(tags.and("pool", pool, "state", "idle"))
+        .strongReference(true)
+        .register(registry);
+  }
+
+  private static String name(Operation operation) {
+    return operation.name().toLowerCase(Locale.ROOT);
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.jeschkies.loki.client.micrometer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.github.jeschkies.loki.client.LokiClient;
+import io.github.jeschkies.loki.client.LokiClientConfig;
+import io.github.jeschkies.loki.client.LokiClientException;
+import io.github.jeschkies.loki.client.LokiClientMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Map;
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class TestMicrometerLokiClientMetrics {
+  private MockWebServer server;
+  private SimpleMeterRegistry registry;
+  private LokiClient client;
+
+  @BeforeEach
+  void setup() throws IOException {
+    server = new MockWebServer();
+    server.start();
+    registry = new SimpleMeterRegistry();
+    client =
+        new LokiClient(
+            LokiClientConfig.builder(server.url("/").uri())
+                .metrics(new MicrometerLokiClientMetrics(registry))
+                .build());
+  }
+
+  @AfterEach
+  void teardown() throws IOException {
+    server.shutdown();
+  }
+
+  @Test
+  void testRecordPushes() throws Exception {
+    server.enqueue(new MockResponse().setResponseCode(204));
+    server.enqueue(new MockResponse().setResponseCode(400).setBody("entry too far behind"));
+
+    client.pushLogLine("line", Instant.now(), Map.of("app", "foo"));
+    assertThatThrownBy(() -> client.pushLogLine("line", Instant.now(), Map.of("app", "foo")))
+        .isInstanceOf(LokiClientException.class);
+
+    assertThat(registry.get("loki.client.pushed.lines").counter().count()).isEqualTo(1);
+    assertThat(registry.get("loki.client.requests").tag("status", "204").timer().count())
+        .isEqualTo(1);
+    assertThat(registry.get("loki.client.errors").tag("status", "400").counter().count())
+        .isEqualTo(1);
+    assertThat(registry.get("loki.client.request.size").tag("operation", "push").summary().count())
+        .isEqualTo(2);
+    assertThat(registry.get("loki.client.connections").tag("state", "open").gauge().value())
+        .isGreaterThanOrEqualTo(0);
+  }
+
+  @Test
+  void testReuseRequestMeters() {
+    MicrometerLokiClientMetrics metrics = new MicrometerLokiClientMetrics(registry);
+
+    metrics.requestCompleted(LokiClientMetrics.Operation.Query, 200, 1_000_000);
+    metrics.requestCompleted(LokiClientMetrics.Operation.Query, 200, 2_000_000);
+    metrics.requestCompleted(LokiClientMetrics.Operation.Query, 503, 3_000_000);
+    metrics.requestCompleted(LokiClientMetrics.Operation.Query, 503, 4_000_000);
+
+    assertThat(registry.find("loki.client.requests").tag("operation", "query").timers())
+        .hasSize(2);
+    assertThat(registry.get("loki.client.requests").tag("status", "200").timer().count())
+        .isEqualTo(2);
+    assertThat(registry.get("loki.client.errors").tag("status", "503").counter().count())
+        .isEqualTo(2);
+    assertThat(registry.find("loki.client.errors").tag("status", "200").counter()).isNull();
+  }
+
+  @Test
+  void testConnectionGaugesPerPool() {
+    SimpleMeterRegistry shared = new SimpleMeterRegistry();
+    LokiClientConfig config =
+        LokiClientConfig.builder(server.url("/").uri())
+            .metrics(new MicrometerLokiClientMetrics(shared))
+            .build();
+    OkHttpClient httpClient = new OkHttpClient();
+
+    new LokiClient(config);
+    new LokiClient(config);
+    new LokiClient(config, httpClient);
+    new LokiClient(config, httpClient).forTenant("tenant");
+
+    // Two clients with their own pools and two clients sharing one pool.
+    assertThat(shared.find("loki.client.connections").tag("state", "open").gauges()).hasSize(3);
+  }
+}
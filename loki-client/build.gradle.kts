@@ -22,8 +22,11 @@ dependencies {
     implementation("com.fasterxml.jackson.core:jackson-annotations:2.17.2")
     implementation("com.fasterxml.jackson.core:jackson-databind:2.17.2")
     implementation("com.google.guava:guava:33.3.0-jre")
+    implementation("com.google.protobuf:protobuf-java:4.28.2")
+    implementation("io.airlift:aircompressor:0.27")
     implementation("com.squareup.okhttp3:okhttp:4.12.0")
 
+    testImplementation("com.squareup.okhttp3:mockwebserver:4.12.0")
     testImplementation("org.assertj:assertj-core:3.26.3")
     testImplementation(platform("org.junit:junit-bom:5.10.0"))
     testImplementation("org.junit.jupiter:junit-jupiter")
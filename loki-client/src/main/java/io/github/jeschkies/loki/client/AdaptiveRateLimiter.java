@@ -0,0 +1,92 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.jeschkies.loki.client;
+
+import com.google.common.util.concurrent.RateLimiter;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the push request rate and adapts it to back pressure from Loki.
+ *
+ * <p>The rate grows additively with every accepted push up to the maximum rate and is halved
+ * whenever Loki answers with 429 or 5xx, down to the minimum rate.
+ */
+public class AdaptiveRateLimiter {
+  private final double minRate;
+  private final double maxRate;
+  private final double increase;
+  private final RateLimiter limiter;
+
+  /**
+   * Create a limiter that starts at the maximum rate.
+   *
+   * @param minRate The minimum number of requests per second.
+   * @param maxRate The maximum number of requests per second.
+   */
+  public AdaptiveRateLimiter(double minRate, double maxRate) {
+    if (minRate <= 0 || maxRate < minRate) {
+      throw new IllegalArgumentException("Rates must be positive and minRate <= maxRate");
+    }
+    this.minRate = minRate;
+    this.maxRate = maxRate;
+    // Recover from the minimum to the maximum rate in about a hundred successful requests.
+    this.increase = Math.max((maxRate - minRate) / 100, minRate / 10);
+    this.limiter = RateLimiter.create(maxRate);
+  }
+
+  /** Blocks until the next request may be sent. */
+  public void acquire() {
+    limiter.acquire();
+  }
+
+  /**
+   * Completes once the next request may be sent. No thread is blocked while waiting for a permit.
+   *
+   * @return a future that completes with the permit.
+   */
+  CompletableFuture<Void> acquireAsync() {
+    if (limiter.tryAcquire()) {
+      return CompletableFuture.completedFuture(null);
+    }
+    // Check again after about one permit interval.
+    long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / limiter.getRate());
+    return CompletableFuture.runAsync(
+            () -> {}, CompletableFuture.delayedExecutor(intervalNanos, TimeUnit.NANOSECONDS))
+        .thenCompose(ignored -> acquireAsync());
+  }
+
+  /** Records an accepted request. */
+  public synchronized void onSuccess() {
+    double rate = limiter.getRate();
+    if (rate < maxRate) {
+      limiter.setRate(Math.min(maxRate, rate + increase));
+    }
+  }
+
+  /** Records a request that Loki rejected because it is overloaded. */
+  public synchronized void onBackpressure() {
+    limiter.setRate(Math.max(minRate, limiter.getRate() / 2));
+  }
+
+  /** Returns a new limiter with the same minimum and maximum rate that starts at the maximum. */
+  AdaptiveRateLimiter withSameBounds() {
+    return new AdaptiveRateLimiter(minRate, maxRate);
+  }
+
+  /** Returns the current number of requests per second. */
+  public double getRate() {
+    return limiter.getRate();
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.jeschkies.loki.client;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/** Adapts OkHttp's asynchronous calls to {@link CompletableFuture}. */
+final class AsyncCall {
+  /** Turns a response into a result. The response is closed afterwards. */
+  @FunctionalInterface
+  interface ResponseHandler<T> {
+    T handle(Response response) throws IOException, LokiClientException;
+  }
+
+  private AsyncCall() {
+    throw new UnsupportedOperationException("This is a utility class and cannot be instantiated");
+  }
+
+  /**
+   * Enqueue a request and handle its response on the executor.
+   *
+   * <p>Cancelling the returned future cancels the HTTP call. Failures complete the future with a
+   * {@link LokiClientException}.
+   */
+  static <T> CompletableFuture<T> enqueue(
+      OkHttpClient httpClient, Request request, ResponseHandler<T> handler, Executor executor) {
+    CompletableFuture<T> result = new CompletableFuture<>();
+    Call call = httpClient.newCall(request);
+    call.enqueue(
+        new Callback() {
+          @Override
+          public void onFailure(Call call, IOException e) {
+            result.completeExceptionally(new LokiClientException("Error sending request", e));
+          }
+
+          @Override
+          public void onResponse(Call call, Response response) {
+            try {
+              executor.execute(() -> handle(response, handler, result));
+            } catch (RejectedExecutionException e) {
+              response.close();
+              result.completeExceptionally(e);
+            }
+          }
+        });
+    result.whenComplete(
+        (value, error) -> {
+          if (result.isCancelled()) {
+            call.cancel();
+          }
+        });
+    return result;
+  }
+
+  /** Like {@link #enqueue} but completes with the open response. */
+  static CompletableFuture<Response> enqueueUnclosed(
+      OkHttpClient httpClient, Request request, Executor executor) {
+    CompletableFuture<Response> result = new CompletableFuture<>();
+    Call call = httpClient.newCall(request);
+    call.enqueue(
+        new Callback() {
+          @Override
+          public void onFailure(Call call, IOException e) {
+            result.completeExceptionally(new LokiClientException("Error sending request", e));
+          }
+
+          @Override
+          public void onResponse(Call call, Response response) {
+            try {
+              executor.execute(
+                  () -> {
+                    if (!result.complete(response)) {
+                      response.close();
+                    }
+                  });
+            } catch (RejectedExecutionException e) {
+              response.close();
+              result.completeExceptionally(e);
+            }
+          }
+        });
+    result.whenComplete(
+        (value, error) -> {
+          if (result.isCancelled()) {
+            call.cancel();
+          }
+        });
+    return result;
+  }
+
+  private static <T> void handle(
+      Response response, ResponseHandler<T> handler, CompletableFuture<T> result) {
+    try (response) {
+      result.complete(handler.handle(response));
+    } catch (IOException e) {
+      result.completeExceptionally(new LokiClientException("Error reading response", e));
+    } catch (LokiClientException | RuntimeException e) {
+      result.completeExceptionally(e);
+    }
+  }
+}
@@ -0,0 +1,298 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.jeschkies.loki.client;
+
+import io.github.jeschkies.loki.client.model.LabelSetInterner;
+import io.github.jeschkies.loki.client.model.LogEntry;
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Pushes log lines asynchronously in batches.
+ *
+ * <p>Callers enqueue lines with {@link #push(String, Instant, Map)}. A background thread groups
+ * them by label set and sends one push request once the batch is full or the linger time expired.
+ *
+ * <p>With a {@link PushSpool} batches that could not be delivered are written to disk and replayed
+ * in order once Loki accepts pushes again. While the spool holds batches, new batches are appended
+ * to it as well to keep the order. Batches that Loki rejects as invalid are dropped and counted as
+ * failed lines.
+ */
+public class BatchingPusher implements Closeable {
+  /** Defines what {@link #push(String, Instant, Map)} does when the queue is full. */
+  public enum OverflowPolicy {
+    /** Wait until there is space in the queue. */
+    Block,
+    /** Drop the oldest queued line to make room for the new one. */
+    DropOldest,
+    /** Drop the new line. */
+    DropNewest;
+  }
+
+  private record QueuedLine(Map<String, String> labels, long ts, String line) {}
+
+  // Rough per-line overhead of the timestamp and JSON framing in the push body.
+  private static final int LINE_OVERHEAD_BYTES = 32;
+  private static final long REPLAY_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+  // Wakes up a sender that waits for more lines when the pusher is closed.
+  private static final QueuedLine WAKE_UP = new QueuedLine(Map.of(), 0, "");
+
+  private final LokiClient client;
+  private final BatchingPusherConfig config;
+  private final BlockingQueue<QueuedLine> queue;
+  private final Thread sender;
+  private final AtomicLong droppedLines = new AtomicLong();
+  private final AtomicLong failedLines = new AtomicLong();
+  private final PushSpool spool;
+  // Producers hold the read lock while they enqueue, so that no line is queued after close()
+  // took the write lock and the sender drained the queue.
+  private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+  private long lastReplayAttempt;
+  private volatile boolean closed = false;
+
+  public BatchingPusher(LokiClient client, BatchingPusherConfig config) {
+    this(client, config, null);
+  }
+
+  /**
+   * Create a pusher that spools undelivered batches to disk.
+   *
+   * @param client The client that sends the batches.
+   * @param config The batching config.
+   * @param spool Holds undelivered batches or null to drop them.
+   */
+  public BatchingPusher(LokiClient client, BatchingPusherConfig config, PushSpool spool) {
+    this.client = client;
+    this.config = config;
+    this.spool = spool;
+    this.lastReplayAttempt = System.nanoTime() - REPLAY_INTERVAL_NANOS;
+    this.queue = new ArrayBlockingQueue<>(config.queueCapacity());
+    this.sender = new Thread(this::run, "loki-batching-pusher");
+    this.sender.setDaemon(true);
+    this.sender.start();
+  }
+
+  /**
+   * Enqueue a log line.
+   *
+   * @param log The log line.
+   * @param timestamp The timestamp of the log line.
+   * @param labels The stream labels of the log line.
+   * @return false if the line was dropped.
+   * @throws InterruptedException when interrupted while waiting for space in the queue.
+   * @throws IllegalStateException when the pusher is closed.
+   */
+  public boolean push(String log, Instant timestamp, Map<String, String> labels)
+      throws InterruptedException {
+    // Interned label sets make grouping by label set in the sender a pointer comparison.
+    QueuedLine line =
+        new QueuedLine(
+            LabelSetInterner.shared().intern(labels), Time.nanosFromInstant(timestamp), log);
+    closeLock.readLock().lockInterruptibly();
+    try {
+      if (closed) {
+        throw new IllegalStateException("Pusher is closed");
+      }
+      return enqueue(line);
+    } finally {
+      closeLock.readLock().unlock();
+    }
+  }
+
+  private boolean enqueue(QueuedLine line) throws InterruptedException {
+    switch (config.overflowPolicy()) {
+      case Block -> queue.put(line);
+      case DropNewest -> {
+        if (!queue.offer(line)) {
+          droppedLines.incrementAndGet();
+          return false;
+        }
+      }
+      case DropOldest -> {
+        while (!queue.offer(line)) {
+          if (queue.poll() != null) {
+            droppedLines.incrementAndGet();
+          }
+        }
+      }
+      default -> throw new IllegalStateException("Unknown policy " + config.overflowPolicy());
+    }
+    return true;
+  }
+
+  /** Returns the number of lines dropped because the queue was full. */
+  public long getDroppedLines() {
+    return droppedLines.get();
+  }
+
+  /** Returns the number of lines that were part of a failed push request. */
+  public long getFailedLines() {
+    return failedLines.get();
+  }
+
+  /** Returns the number of lines waiting to be sent. */
+  public int getQueueDepth() {
+    return queue.size();
+  }
+
+  /** Stop accepting new lines, send all pending lines and stop the sender thread. */
+  @Override
+  public void close() {
+    closeLock.writeLock().lock();
+    try {
+      closed = true;
+    } finally {
+      closeLock.writeLock().unlock();
+    }
+    // If the queue is full the sender is busy and sees the closed flag before it waits again.
+    queue.offer(WAKE_UP);
+    try {
+      sender.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void run() {
+    final long lingerNanos = config.linger().toNanos();
+    final List<QueuedLine> batch = new ArrayList<>();
+    while (!closed || !queue.isEmpty()) {
+      try {
+        QueuedLine first = queue.poll(lingerNanos, TimeUnit.NANOSECONDS);
+        if (first == null || first == WAKE_UP) {
+          replaySpool();
+          continue;
+        }
+        final long deadline = System.nanoTime() + lingerNanos;
+        batch.add(first);
+        long batchBytes = first.line().length() + LINE_OVERHEAD_BYTES;
+        while (batch.size() < config.maxBatchLines() && batchBytes < config.maxBatchBytes()) {
+          long remaining = deadline - System.nanoTime();
+          QueuedLine next;
+          if (closed) {
+            next = queue.poll();
+          } else if (remaining > 0) {
+            next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+          } else {
+            break;
+          }
+          if (next == null || next == WAKE_UP) {
+            break;
+          }
+          batch.add(next);
+          batchBytes += next.line().length() + LINE_OVERHEAD_BYTES;
+        }
+      } catch (InterruptedException e) {
+        // Send what we have and leave.
+        closed = true;
+      }
+      if (!batch.isEmpty()) {
+        try {
+          send(batch);
+        } catch (RuntimeException e) {
+          // The sender must keep running since blocked producers wait for it to drain the queue.
+          failedLines.addAndGet(batch.size());
+        }
+        batch.clear();
+      }
+    }
+    replaySpool();
+  }
+
+  private void send(List<QueuedLine> batch) {
+    Map<Map<String, String>, List<LogEntry>> streams = new LinkedHashMap<>();
+    for (QueuedLine line : batch) {
+      streams
+          .computeIfAbsent(line.labels(), k -> new ArrayList<>())
+          .add(new LogEntry(line.ts(), line.line()));
+    }
+    if (spool == null) {
+      try {
+        client.pushStreams(streams);
+      } catch (IOException | LokiClientException e) {
+        failedLines.addAndGet(batch.size());
+      }
+      return;
+    }
+
+    try {
+      if (spool.isEmpty()) {
+        try {
+          client.pushStreams(streams);
+          return;
+        } catch (LokiClientException e) {
+          if (!RetryPolicy.isRetryable(e)) {
+            failedLines.addAndGet(batch.size());
+            return;
+          }
+        } catch (IOException e) {
+          // Loki is not reachable, spool the batch.
+        }
+      }
+      spool.append(ProtobufPushEncoder.encode(streams));
+    } catch (IOException e) {
+      failedLines.addAndGet(batch.size());
+    }
+    replaySpool();
+  }
+
+  private static int countEntries(byte[] record) {
+    try {
+      return ProtobufPushEncoder.countEntries(record);
+    } catch (IOException e) {
+      // The spool checks the CRC of its records, so this is not expected.
+      return 0;
+    }
+  }
+
+  /** Send spooled batches in order until the spool is empty or Loki fails again. */
+  private void replaySpool() {
+    if (spool == null || spool.isEmpty()) {
+      return;
+    }
+    long now = System.nanoTime();
+    if (now - lastReplayAttempt < REPLAY_INTERVAL_NANOS && !closed) {
+      return;
+    }
+    lastReplayAttempt = now;
+    try {
+      byte[] record;
+      while ((record = spool.peek()) != null) {
+        try {
+          client.pushEncoded(record);
+        } catch (LokiClientException e) {
+          if (RetryPolicy.isRetryable(e)) {
+            return;
+          }
+          // Loki rejected the batch as invalid. Drop it like a rejected live batch.
+          failedLines.addAndGet(countEntries(record));
+        }
+        spool.commit();
+      }
+    } catch (IOException | RuntimeException e) {
+      // Loki or the spool are unavailable. Try again later.
+    }
+  }
+}
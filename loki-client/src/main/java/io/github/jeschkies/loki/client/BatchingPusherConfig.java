@@ -0,0 +1,50 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.jeschkies.loki.client;
+
+import java.time.Duration;
+
+/**
+ * Configuration of a {@link BatchingPusher}.
+ *
+ * @param queueCapacity Maximum number of lines waiting to be sent.
+ * @param maxBatchLines Maximum number of lines in one push request.
+ * @param maxBatchBytes Approximate maximum size of the log lines in one push request.
+ * @param linger How long the sender waits for more lines before it sends a partial batch.
+ * @param overflowPolicy What happens when the queue is full.
+ */
+public record BatchingPusherConfig(
+    int queueCapacity,
+    int maxBatchLines,
+    long maxBatchBytes,
+    Duration linger,
+    BatchingPusher.OverflowPolicy overflowPolicy) {
+  public BatchingPusherConfig {
+    if (queueCapacity <= 0) {
+      queueCapacity = 10000;
+    }
+    if (maxBatchLines <= 0) {
+      maxBatchLines = 1000;
+    }
+    if (maxBatchBytes <= 0) {
+      maxBatchBytes = 1024 * 1024;
+    }
+    if (linger == null) {
+      linger = Duration.ofMillis(200);
+    }
+    if (overflowPolicy == null) {
+      overflowPolicy = BatchingPusher.OverflowPolicy.Block;
+    }
+  }
+}
@@ -0,0 +1,135 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.jeschkies.loki.client;
+
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Limits the number of concurrent requests of a tenant.
+ *
+ * <p>Permits are handed out first come, first served to blocking and asynchronous callers.
+ * Asynchronous callers wait for a permit without holding a thread, so a tenant at its limit does
+ * not occupy the threads of OkHttp's dispatcher that are shared by all tenants.
+ */
+final class ConcurrencyLimit {
+  private final int maxConcurrent;
+  private final Queue<CompletableFuture<Void>> waiting = new ArrayDeque<>();
+  private int inFlight = 0;
+
+  /**
+   * Create a limit.
+   *
+   * @param maxConcurrent The maximum number of concurrent requests.
+   */
+  ConcurrencyLimit(int maxConcurrent) {
+    if (maxConcurrent <= 0) {
+      throw new IllegalArgumentException("maxConcurrent must be positive");
+    }
+    this.maxConcurrent = maxConcurrent;
+  }
+
+  /**
+   * Blocks until a permit is available.
+   *
+   * @throws InterruptedIOException when interrupted while waiting.
+   */
+  void acquire() throws InterruptedIOException {
+    CompletableFuture<Void> permit = acquireAsync();
+    try {
+      permit.get();
+    } catch (InterruptedException e) {
+      if (!permit.cancel(false)) {
+        release();
+      }
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for a request permit");
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Permits do not fail", e);
+    }
+  }
+
+  /** Returns a future that completes with a permit. Cancel it to stop waiting. */
+  CompletableFuture<Void> acquireAsync() {
+    synchronized (this) {
+      if (inFlight < maxConcurrent) {
+        inFlight++;
+        return CompletableFuture.completedFuture(null);
+      }
+      CompletableFuture<Void> permit = new CompletableFuture<>();
+      waiting.add(permit);
+      return permit;
+    }
+  }
+
+  /** Returns a permit and hands it to the next waiting caller. */
+  void release() {
+    CompletableFuture<Void> next;
+    synchronized (this) {
+      next = waiting.poll();
+      if (next == null) {
+        inFlight--;
+        return;
+      }
+    }
+    // Complete outside the lock since dependent calls run on this thread.
+    if (!next.complete(null)) {
+      // The caller stopped waiting, pass the permit on.
+      release();
+    }
+  }
+
+  /**
+   * Start an asynchronous call once a permit is available and return the permit when it completes.
+   * Cancelling the returned future cancels the call or stops waiting for a permit.
+   */
+  <T> CompletableFuture<T> enqueue(Supplier<CompletableFuture<T>> call) {
+    CompletableFuture<T> result = new CompletableFuture<>();
+    CompletableFuture<Void> permit = acquireAsync();
+    result.whenComplete(
+        (value, error) -> {
+          if (result.isCancelled()) {
+            permit.cancel(false);
+          }
+        });
+    permit.thenRun(
+        () -> {
+          if (result.isDone()) {
+            release();
+            return;
+          }
+          CompletableFuture<T> started = call.get();
+          result.whenComplete(
+              (value, error) -> {
+                if (result.isCancelled()) {
+                  started.cancel(false);
+                }
+              });
+          started.whenComplete(
+              (value, error) -> {
+                release();
+                if (error != null) {
+                  result.completeExceptionally(error);
+                } else {
+                  result.complete(value);
+                }
+              });
+        });
+    return result;
+  }
+}
@@ -0,0 +1,60 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.jeschkies.loki.client;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Retries retryable failures with exponential backoff and jitter.
+ *
+ * <p>The delay doubles with each attempt up to {@code maxDelay}. Half of it is randomized so that
+ * clients do not retry in lock step. A Retry-After header of a 429 or 503 response takes
+ * precedence over the computed delay. If it asks to wait longer than {@code maxDelay}, the request
+ * is not retried and fails right away with the server's delay in {@link
+ * LokiClientException#getRetryAfter()}.
+ *
+ * @param initialDelay The delay before the first retry.
+ * @param maxDelay The upper bound of the computed delay and of a Retry-After delay.
+ * @param maxAttempts The maximum number of attempts including the first one.
+ */
+public record ExponentialBackoffRetryPolicy(
+    Duration initialDelay, Duration maxDelay, int maxAttempts) implements RetryPolicy {
+  public ExponentialBackoffRetryPolicy {
+    if (initialDelay == null) {
+      initialDelay = Duration.ofMillis(100);
+    }
+    if (maxDelay == null) {
+      maxDelay = Duration.ofSeconds(10);
+    }
+    if (maxAttempts <= 0) {
+      maxAttempts = 5;
+    }
+  }
+
+  @Override
+  public Optional<Duration> nextDelay(int attempt, Exception failure) {
+    if (attempt >= maxAttempts || !RetryPolicy.isRetryable(failure)) {
+      return Optional.empty();
+    }
+    if (failure instanceof LokiClientException e && e.getRetryAfter().isPresent()) {
+      return e.getRetryAfter().filter(retryAfter -> retryAfter.compareTo(maxDelay) <= 0);
+    }
+    long delay =
+        Math.min(maxDelay.toNanos(), initialDelay.toNanos() << Math.min(attempt - 1, 30));
+    long half = delay / 2;
+    return Optional.of(Duration.ofNanos(half + ThreadLocalRandom.current().nextLong(half + 1)));
+  }
+}
@@ -0,0 +1,65 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.jeschkies.loki.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okio.BufferedSink;
+import okio.GzipSink;
+import okio.Okio;
+
+/** Gzip compression of request bodies and decompression of response bodies. */
+final class Gzip {
+  private Gzip() {
+    throw new UnsupportedOperationException("This is a utility class and cannot be instantiated");
+  }
+
+  /** Returns a body that compresses the given body while it is written to the connection. */
+  static RequestBody compress(RequestBody body) {
+    return new RequestBody() {
+      @Override
+      public MediaType contentType() {
+        return body.contentType();
+      }
+
+      @Override
+      public long contentLength() {
+        return -1;
+      }
+
+      @Override
+      public void writeTo(BufferedSink sink) throws IOException {
+        try (BufferedSink gzipSink = Okio.buffer(new GzipSink(sink))) {
+          body.writeTo(gzipSink);
+        }
+      }
+    };
+  }
+
+  /**
+   * Returns the response body stream. The stream is decompressed on the fly if the server sent a
+   * gzip encoded body that OkHttp did not decompress already.
+   */
+  static InputStream responseStream(Response response) throws IOException {
+    InputStream input = response.body().byteStream();
+    if ("gzip".equalsIgnoreCase(response.header("Content-Encoding"))) {
+      return new GZIPInputStream(input);
+    }
+    return input;
+  }
+}
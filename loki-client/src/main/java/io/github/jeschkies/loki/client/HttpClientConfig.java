@@ -0,0 +1,64 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.jeschkies.loki.client;
+
+import java.time.Duration;
+
+/**
+ * Connection pool, dispatcher, timeout and protocol settings of the client's {@code OkHttpClient}.
+ *
+ * <p>Values that are null or not positive fall back to OkHttp's defaults.
+ *
+ * @param connectTimeout Timeout for establishing a connection.
+ * @param writeTimeout Timeout for writing a request body.
+ * @param maxIdleConnections Maximum number of idle connections kept in the pool.
+ * @param keepAlive How long idle connections are kept in the pool.
+ * @param maxRequests Maximum number of concurrent asynchronous requests.
+ * @param maxRequestsPerHost Maximum number of concurrent asynchronous requests to one host.
+ * @param http2PriorKnowledge Use cleartext HTTP/2 without an HTTP/1.1 upgrade.
+ */
+public record HttpClientConfig(
+    Duration connectTimeout,
+    Duration writeTimeout,
+    int maxIdleConnections,
+    Duration keepAlive,
+    int maxRequests,
+    int maxRequestsPerHost,
+    boolean http2PriorKnowledge) {
+  public HttpClientConfig {
+    if (connectTimeout == null) {
+      connectTimeout = Duration.ofSeconds(10);
+    }
+    if (writeTimeout == null) {
+      writeTimeout = Duration.ofSeconds(10);
+    }
+    if (maxIdleConnections <= 0) {
+      maxIdleConnections = 5;
+    }
+    if (keepAlive == null) {
+      keepAlive = Duration.ofMinutes(5);
+    }
+    if (maxRequests <= 0) {
+      maxRequests = 64;
+    }
+    if (maxRequestsPerHost <= 0) {
+      maxRequestsPerHost = 5;
+    }
+  }
+
+  /** Returns the OkHttp defaults. */
+  public static HttpClientConfig defaults() {
+    return new HttpClientConfig(null, null, 0, null, 0, 0, false);
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.jeschkies.loki.client;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.StreamWriteFeature;
+import io.github.jeschkies.loki.client.model.LogEntry;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+
+/**
+ * A JSON push request body that is generated while it is written to the connection.
+ *
+ * <p>The entries are written token by token into the sink, so the body never exists as a {@link
+ * String} or byte array. Timestamps are formatted into a reused character buffer. The body can be
+ * written more than once, e.g. when the request is retried.
+ */
+final class JsonPushBody extends RequestBody {
+  static final MediaType MEDIA_TYPE = MediaType.parse("application/json");
+
+  // The sink belongs to OkHttp, so closing a generator must not close it.
+  private static final JsonFactory factory =
+      JsonFactory.builder().disable(StreamWriteFeature.AUTO_CLOSE_TARGET).build();
+
+  private final Map<Map<String, String>, List<LogEntry>> streams;
+
+  JsonPushBody(Map<Map<String, String>, List<LogEntry>> streams) {
+    this.streams = streams;
+  }
+
+  @Override
+  public MediaType contentType() {
+    return MEDIA_TYPE;
+  }
+
+  @Override
+  public void writeTo(BufferedSink sink) throws IOException {
+    try (JsonGenerator generator = factory.createGenerator(sink.outputStream())) {
+      write(generator);
+    }
+  }
+
+  private void write(JsonGenerator generator) throws IOException {
+    char[] ts = new char[20];
+    generator.writeStartObject();
+    generator.writeArrayFieldStart("streams");
+    for (var stream : streams.entrySet()) {
+      generator.writeStartObject();
+      generator.writeObjectFieldStart("stream");
+      for (var label : stream.getKey().entrySet()) {
+        generator.writeStringField(label.getKey(), label.getValue());
+      }
+      generator.writeEndObject();
+      generator.writeArrayFieldStart("values");
+      for (LogEntry entry : stream.getValue()) {
+        generator.writeStartArray();
+        int offset = formatLong(entry.ts(), ts);
+        generator.writeString(ts, offset, ts.length - offset);
+        generator.writeString(entry.getLine());
+        if (!entry.getStructuredMetadata().isEmpty()) {
+          generator.writeStartObject();
+          for (var pair : entry.getStructuredMetadata().entrySet()) {
+            generator.writeStringField(pair.getKey(), pair.getValue());
+          }
+          generator.writeEndObject();
+        }
+        generator.writeEndArray();
+      }
+      generator.writeEndArray();
+      generator.writeEndObject();
+    }
+    generator.writeEndArray();
+    generator.writeEndObject();
+  }
+
+  /**
+   * Format a value right aligned into the buffer.
+   *
+   * @return the offset of the first character.
+   */
+  private static int formatLong(long value, char[] buffer) {
+    if (value < 0) {
+      String text = Long.toString(value);
+      text.getChars(0, text.length(), buffer, buffer.length - text.length());
+      return buffer.length - text.length();
+    }
+    int offset = buffer.length;
+    do {
+      buffer[--offset] = (char) ('0' + value % 10);
+      value /= 10;
+    } while (value != 0);
+    return offset;
+  }
+}
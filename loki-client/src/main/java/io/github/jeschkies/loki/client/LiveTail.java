@@ -0,0 +1,283 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.jeschkies.loki.client;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.github.jeschkies.loki.client.model.LabelSetInterner;
+import io.github.jeschkies.loki.client.model.LogEntry;
+import io.github.jeschkies.loki.client.model.Streams;
+import io.github.jeschkies.loki.client.model.TailResponse;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongFunction;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+
+/**
+ * Streams new log entries of a query from Loki's tail WebSocket to a {@link Listener}.
+ *
+ * <p>Entries are queued between the WebSocket and a delivery thread that calls the listener, so a
+ * slow listener does not stall the connection unless the {@link TailConfig#overflowPolicy()} is
+ * {@code Block}. Entries dropped by the overflow policy or by Loki are reported to the listener.
+ *
+ * <p>A lost connection is opened again according to the {@link TailConfig#reconnectPolicy()}. The
+ * new connection resumes at the timestamp of the last received entry and entries of that
+ * nanosecond that were already received are skipped.
+ */
+public class LiveTail implements Closeable {
+  /** Receives the tailed entries. */
+  public interface Listener {
+    /**
+     * Called on the delivery thread for each entry in the order they were received.
+     *
+     * @param labels The stream labels of the entry.
+     * @param entry The log entry.
+     */
+    void onEntry(Map<String, String> labels, LogEntry entry);
+
+    /**
+     * Called on the delivery thread when entries were dropped since the last call.
+     *
+     * @param count The number of dropped entries.
+     */
+    default void onDropped(long count) {}
+
+    /**
+     * Called on an OkHttp thread when the connection was lost and is not opened again.
+     *
+     * @param error The failure of the last connection.
+     */
+    default void onError(LokiClientException error) {}
+  }
+
+  static final ScheduledExecutorService reconnector =
+      Executors.newSingleThreadScheduledExecutor(
+          new ThreadFactoryBuilder().setDaemon(true).setNameFormat("loki-tail-reconnect").build());
+
+  private static final long POLL_INTERVAL_MILLIS = 100;
+
+  private record TailedEntry(Map<String, String> labels, LogEntry entry) {}
+
+  private record BoundaryEntry(Map<String, String> labels, String line) {}
+
+  private final OkHttpClient httpClient;
+  private final LongFunction<Request> requestFrom;
+  private final TailConfig config;
+  private final Listener listener;
+  private final BlockingQueue<TailedEntry> queue;
+  private final Thread delivery;
+  private final AtomicLong droppedEntries = new AtomicLong();
+
+  // Guarded by this.
+  private WebSocket webSocket;
+  private int attempt;
+  private long lastTs;
+  private long resumeFrom = Long.MIN_VALUE;
+  private final Set<BoundaryEntry> boundaryEntries = new HashSet<>();
+
+  private volatile boolean closed = false;
+
+  LiveTail(
+      OkHttpClient httpClient,
+      LongFunction<Request> requestFrom,
+      long startNanos,
+      TailConfig config,
+      Listener listener) {
+    this.httpClient = httpClient;
+    this.requestFrom = requestFrom;
+    this.config = config;
+    this.listener = listener;
+    this.lastTs = startNanos;
+    this.queue = new ArrayBlockingQueue<>(config.queueCapacity());
+    this.delivery = new Thread(this::deliver, "loki-tail");
+    this.delivery.setDaemon(true);
+    this.delivery.start();
+    connect();
+  }
+
+  /** Returns the number of entries dropped locally or by Loki. */
+  public long getDroppedEntries() {
+    return droppedEntries.get();
+  }
+
+  /** Returns whether the tail is connected or about to reconnect. */
+  public synchronized boolean isActive() {
+    return !closed && (webSocket != null || attempt > 0);
+  }
+
+  /** Close the connection and deliver the entries that are still queued. */
+  @Override
+  public void close() {
+    closed = true;
+    synchronized (this) {
+      if (webSocket != null) {
+        webSocket.close(1000, null);
+        webSocket = null;
+      }
+    }
+    try {
+      delivery.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private synchronized void connect() {
+    if (!closed) {
+      webSocket = httpClient.newWebSocket(requestFrom.apply(lastTs), new Handler());
+    }
+  }
+
+  /** Schedule a reconnect unless the socket was replaced already or the policy gives up. */
+  private synchronized void disconnected(WebSocket socket, LokiClientException error) {
+    if (closed || socket != webSocket) {
+      return;
+    }
+    webSocket = null;
+    resumeFrom = lastTs;
+    Optional<Duration> delay = config.reconnectPolicy().nextDelay(++attempt, error);
+    if (delay.isEmpty()) {
+      attempt = 0;
+      listener.onError(error);
+      return;
+    }
+    reconnector.schedule(this::connect, delay.get().toNanos(), TimeUnit.NANOSECONDS);
+  }
+
+  private void receive(TailResponse response) throws InterruptedException {
+    List<TailedEntry> received = new ArrayList<>();
+    synchronized (this) {
+      for (Streams.Stream stream : response.getStreams()) {
+        Map<String, String> labels = LabelSetInterner.shared().intern(stream.labels());
+        for (LogEntry entry : stream.values()) {
+          BoundaryEntry boundaryEntry = new BoundaryEntry(labels, entry.getLine());
+          if (entry.ts() < resumeFrom
+              || (entry.ts() == resumeFrom && boundaryEntries.contains(boundaryEntry))) {
+            continue;
+          }
+          if (entry.ts() > lastTs) {
+            lastTs = entry.ts();
+            boundaryEntries.clear();
+          }
+          if (entry.ts() == lastTs) {
+            boundaryEntries.add(boundaryEntry);
+          }
+          received.add(new TailedEntry(labels, entry));
+        }
+      }
+    }
+    droppedEntries.addAndGet(response.getDroppedEntries().size());
+
+    for (TailedEntry entry : received) {
+      switch (config.overflowPolicy()) {
+        case Block -> queue.put(entry);
+        case DropNewest -> {
+          if (!queue.offer(entry)) {
+            droppedEntries.incrementAndGet();
+          }
+        }
+        case DropOldest -> {
+          while (!queue.offer(entry)) {
+            if (queue.poll() != null) {
+              droppedEntries.incrementAndGet();
+            }
+          }
+        }
+      }
+    }
+  }
+
+  private void deliver() {
+    long reported = 0;
+    while (!closed || !queue.isEmpty()) {
+      TailedEntry entry;
+      try {
+        entry = queue.poll(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        return;
+      }
+      long dropped = droppedEntries.get();
+      if (dropped != reported) {
+        listener.onDropped(dropped - reported);
+        reported = dropped;
+      }
+      if (entry != null) {
+        listener.onEntry(entry.labels(), entry.entry());
+      }
+    }
+  }
+
+  private class Handler extends WebSocketListener {
+    @Override
+    public void onOpen(WebSocket socket, Response response) {
+      synchronized (LiveTail.this) {
+        attempt = 0;
+      }
+    }
+
+    @Override
+    public void onMessage(WebSocket socket, String text) {
+      try {
+        receive(TailResponse.fromJSON(text));
+      } catch (IOException e) {
+        socket.cancel();
+        disconnected(socket, new LokiClientException("Invalid tail message", e));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    @Override
+    public void onClosing(WebSocket socket, int code, String reason) {
+      socket.close(1000, null);
+    }
+
+    @Override
+    public void onClosed(WebSocket socket, int code, String reason) {
+      disconnected(
+          socket,
+          new LokiClientException(
+              "Tail connection closed",
+              new EOFException("Closed by Loki with " + code + " " + reason)));
+    }
+
+    @Override
+    public void onFailure(WebSocket socket, Throwable t, Response response) {
+      LokiClientException error;
+      if (response != null && response.code() != 101) {
+        error = new LokiClientException("Tail connection failed", response.code());
+      } else {
+        error = new LokiClientException("Tail connection failed", t);
+      }
+      disconnected(socket, error);
+    }
+  }
+}
@@ -0,0 +1,183 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.jeschkies.loki.client;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Spreads requests over several Loki endpoints.
+ *
+ * <p>The interceptor replaces the scheme, host and port of each request with an endpoint of the
+ * request's {@link LokiClientMetrics.Operation} and prepends the endpoint's path, if any. Of two
+ * random endpoints it picks the one with fewer outstanding requests. Endpoints that failed several
+ * times in a row are ejected for a while. While all endpoints are ejected, requests are spread over
+ * all of them.
+ *
+ * <p>Requests that could not connect are sent to another endpoint right away, since they never
+ * reached Loki. Other failures are left to the client's {@link RetryPolicy}, whose next attempt
+ * picks an endpoint again.
+ */
+final class LoadBalancer implements Interceptor {
+  /** An endpoint with its passive health state. */
+  static final class Endpoint {
+    private final URI uri;
+    private final String pathPrefix;
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private volatile long ejectedUntil;
+
+    Endpoint(URI uri) {
+      this.uri = uri;
+      String path = uri.getRawPath() == null ? "" : uri.getRawPath();
+      this.pathPrefix = path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+      this.ejectedUntil = System.nanoTime();
+    }
+
+    URI uri() {
+      return uri;
+    }
+
+    int outstanding() {
+      return outstanding.get();
+    }
+
+    boolean isEjected(long now) {
+      return ejectedUntil - now > 0;
+    }
+  }
+
+  private final List<Endpoint> pushEndpoints;
+  private final List<Endpoint> queryEndpoints;
+  private final int failureThreshold;
+  private final long ejectionNanos;
+
+  LoadBalancer(LoadBalancerConfig config) {
+    this.pushEndpoints = config.pushEndpoints().stream().map(Endpoint::new).toList();
+    this.queryEndpoints = config.queryEndpoints().stream().map(Endpoint::new).toList();
+    this.failureThreshold = config.failureThreshold();
+    this.ejectionNanos = config.ejectionTime().toNanos();
+  }
+
+  @Override
+  public Response intercept(Chain chain) throws IOException {
+    Request request = chain.request();
+    List<Endpoint> endpoints =
+        request.tag(LokiClientMetrics.Operation.class) == LokiClientMetrics.Operation.Query
+            ? queryEndpoints
+            : pushEndpoints;
+    if (endpoints.isEmpty()) {
+      return chain.proceed(request);
+    }
+
+    List<Endpoint> tried = new ArrayList<>(1);
+    while (true) {
+      Endpoint endpoint = choose(endpoints, tried);
+      tried.add(endpoint);
+      endpoint.outstanding.incrementAndGet();
+      try {
+        Response response =
+            chain.proceed(request.newBuilder().url(rewrite(request.url(), endpoint)).build());
+        // Gateway errors and unavailability point at the replica, other errors at the request.
+        if (response.code() == 502 || response.code() == 503 || response.code() == 504) {
+          onFailure(endpoint);
+        } else {
+          endpoint.consecutiveFailures.set(0);
+        }
+        return response;
+      } catch (IOException e) {
+        onFailure(endpoint);
+        if (!isConnectFailure(e) || tried.size() == endpoints.size() || chain.call().isCanceled()) {
+          throw e;
+        }
+      } finally {
+        endpoint.outstanding.decrementAndGet();
+      }
+    }
+  }
+
+  /**
+   * Pick the endpoint with fewer outstanding requests of two random candidates.
+   *
+   * @param endpoints All endpoints of the operation.
+   * @param tried Endpoints that already failed for this request.
+   * @return the endpoint for the next attempt.
+   */
+  Endpoint choose(List<Endpoint> endpoints, List<Endpoint> tried) {
+    long now = System.nanoTime();
+    List<Endpoint> candidates = new ArrayList<>(endpoints.size());
+    for (Endpoint endpoint : endpoints) {
+      if (!endpoint.isEjected(now) && !tried.contains(endpoint)) {
+        candidates.add(endpoint);
+      }
+    }
+    if (candidates.isEmpty()) {
+      // Better to try an ejected endpoint than to fail without a request.
+      for (Endpoint endpoint : endpoints) {
+        if (!tried.contains(endpoint)) {
+          candidates.add(endpoint);
+        }
+      }
+    }
+    if (candidates.size() == 1) {
+      return candidates.getFirst();
+    }
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    int first = random.nextInt(candidates.size());
+    int second = random.nextInt(candidates.size() - 1);
+    if (second >= first) {
+      second++;
+    }
+    Endpoint a = candidates.get(first);
+    Endpoint b = candidates.get(second);
+    return b.outstanding() < a.outstanding() ? b : a;
+  }
+
+  private void onFailure(Endpoint endpoint) {
+    if (endpoint.consecutiveFailures.incrementAndGet() >= failureThreshold) {
+      endpoint.consecutiveFailures.set(0);
+      endpoint.ejectedUntil = System.nanoTime() + ejectionNanos;
+    }
+  }
+
+  private static HttpUrl rewrite(HttpUrl url, Endpoint endpoint) {
+    URI uri = endpoint.uri();
+    int port = uri.getPort() != -1 ? uri.getPort() : HttpUrl.defaultPort(uri.getScheme());
+    HttpUrl.Builder builder =
+        url.newBuilder().scheme(uri.getScheme()).host(uri.getHost()).port(port);
+    if (!endpoint.pathPrefix.isEmpty()) {
+      // A gateway routes e.g. http://gw/loki-a/loki/api/v1/push to the replica behind loki-a.
+      builder.encodedPath(endpoint.pathPrefix + url.encodedPath());
+    }
+    return builder.build();
+  }
+
+  /** Returns true if the request failed before it was sent. */
+  private static boolean isConnectFailure(IOException e) {
+    return e instanceof ConnectException
+        || e instanceof NoRouteToHostException
+        || e instanceof UnknownHostException;
+  }
+}
@@ -0,0 +1,52 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.jeschkies.loki.client;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Endpoints the client balances requests over instead of the single {@link LokiClientConfig#uri()}.
+ *
+ * <p>Pushes go to the push endpoints, e.g. the distributors, and queries and tails to the query
+ * endpoints, e.g. the query frontends. An empty list sends the requests to the configured URI.
+ * The path of an endpoint, e.g. {@code http://gw/loki-a} behind a gateway, is kept as a prefix of
+ * the request path.
+ *
+ * @param pushEndpoints The endpoints for push and flush requests.
+ * @param queryEndpoints The endpoints for query and tail requests.
+ * @param failureThreshold The number of consecutive failures after which an endpoint is ejected.
+ * @param ejectionTime How long an ejected endpoint receives no requests.
+ */
+public record LoadBalancerConfig(
+    List<URI> pushEndpoints,
+    List<URI> queryEndpoints,
+    int failureThreshold,
+    Duration ejectionTime) {
+  public LoadBalancerConfig {
+    pushEndpoints = pushEndpoints == null ? List.of() : List.copyOf(pushEndpoints);
+    queryEndpoints = queryEndpoints == null ? List.of() : List.copyOf(queryEndpoints);
+    if (failureThreshold <= 0) {
+      failureThreshold = 3;
+    }
+    if (ejectionTime == null) {
+      ejectionTime = Duration.ofSeconds(30);
+    }
+  }
+
+  public LoadBalancerConfig(List<URI> pushEndpoints, List<URI> queryEndpoints) {
+    this(pushEndpoints, queryEndpoints, 0, null);
+  }
+}
@@ -0,0 +1,153 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.jeschkies.loki.client;
+
+import io.github.jeschkies.loki.client.model.Data;
+import java.util.Optional;
+import java.util.Set;
+
+/** Lightweight inspection of LogQL query strings that does not need a full parser. */
+final class LogQL {
+  /** Range and vector aggregations that always make an expression a metric query. */
+  private static final Set<String> METRIC_FUNCTIONS =
+      Set.of(
+          "rate",
+          "rate_counter",
+          "count_over_time",
+          "bytes_rate",
+          "bytes_over_time",
+          "absent_over_time",
+          "sum_over_time",
+          "avg_over_time",
+          "max_over_time",
+          "min_over_time",
+          "first_over_time",
+          "last_over_time",
+          "stdvar_over_time",
+          "stddev_over_time",
+          "quantile_over_time",
+          "sum",
+          "avg",
+          "min",
+          "max",
+          "stddev",
+          "stdvar",
+          "count",
+          "topk",
+          "bottomk",
+          "approx_topk",
+          "sort",
+          "sort_desc",
+          "label_replace",
+          "vector");
+
+  private LogQL() {
+    throw new UnsupportedOperationException("This is a utility class and cannot be instantiated");
+  }
+
+  /**
+   * Classify a query as log or metric query without asking Loki.
+   *
+   * <p>A query that starts with a stream selector and has no range is a log query. A query that
+   * starts with a range or vector aggregation is a metric query. Anything else, e.g. binary
+   * operations on parenthesized expressions, is left to the server.
+   *
+   * @param query The LogQL query string.
+   * @return the result type of a range query, or empty if the query is ambiguous.
+   */
+  static Optional<Data.ResultType> classify(String query) {
+    String normalized = normalize(query);
+    if (normalized.isEmpty()) {
+      return Optional.empty();
+    }
+    if (normalized.charAt(0) == '{') {
+      return hasRange(normalized) ? Optional.empty() : Optional.of(Data.ResultType.Streams);
+    }
+    int end = 0;
+    while (end < normalized.length() && isWordChar(normalized.charAt(end))) {
+      end++;
+    }
+    if (end < normalized.length()
+        && (normalized.charAt(end) == '(' || normalized.charAt(end) == ' ')
+        && METRIC_FUNCTIONS.contains(normalized.substring(0, end))) {
+      return Optional.of(Data.ResultType.Matrix);
+    }
+    return Optional.empty();
+  }
+
+  /**
+   * Remove comments and whitespace outside of string literals that does not separate two words, so
+   * that queries that only differ in formatting are equal.
+   */
+  static String normalize(String query) {
+    StringBuilder normalized = new StringBuilder(query.length());
+    char quote = 0;
+    boolean whitespace = false;
+    for (int i = 0; i < query.length(); i++) {
+      char c = query.charAt(i);
+      if (quote != 0) {
+        normalized.append(c);
+        if (c == '\\' && quote == '"' && i + 1 < query.length()) {
+          normalized.append(query.charAt(++i));
+        } else if (c == quote) {
+          quote = 0;
+        }
+      } else if (c == '#') {
+        while (i + 1 < query.length() && query.charAt(i + 1) != '\n') {
+          i++;
+        }
+        whitespace = true;
+      } else if (Character.isWhitespace(c)) {
+        whitespace = true;
+      } else {
+        if (whitespace
+            && !normalized.isEmpty()
+            && isWordChar(normalized.charAt(normalized.length() - 1))
+            && isWordChar(c)) {
+          normalized.append(' ');
+        }
+        whitespace = false;
+        normalized.append(c);
+        if (c == '"' || c == '`') {
+          quote = c;
+        }
+      }
+    }
+    return normalized.toString();
+  }
+
+  /** Returns whether a normalized query has a range selector outside of string literals. */
+  private static boolean hasRange(String normalized) {
+    char quote = 0;
+    for (int i = 0; i < normalized.length(); i++) {
+      char c = normalized.charAt(i);
+      if (quote != 0) {
+        if (c == '\\' && quote == '"') {
+          i++;
+        } else if (c == quote) {
+          quote = 0;
+        }
+      } else if (c == '"' || c == '`') {
+        quote = c;
+      } else if (c == '[') {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean isWordChar(char c) {
+    return Character.isLetterOrDigit(c) || c == '_';
+  }
+}
@@ -13,19 +13,42 @@
  */
 package io.github.jeschkies.loki.client;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import io.github.jeschkies.loki.client.model.Data;
+import io.github.jeschkies.loki.client.model.LabelSetInterner;
+import io.github.jeschkies.loki.client.model.LogEntry;
 import io.github.jeschkies.loki.client.model.QueryResult;
+import io.github.jeschkies.loki.client.model.QueryResultReader;
+import io.github.jeschkies.loki.client.model.QueryResultVisitor;
+import io.github.jeschkies.loki.client.model.ResultMerger;
+import io.github.jeschkies.loki.client.model.Streams;
 import java.io.IOException;
-import java.io.InputStream;
 import java.net.URI;
 import java.time.Duration;
 import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Objects;
+import java.util.Optional;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
 import okhttp3.HttpUrl;
 import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
 import okhttp3.Request;
 import okhttp3.RequestBody;
 import okhttp3.Response;
@@ -33,17 +56,150 @@ import okhttp3.Response;
 public class LokiClient {
   private final OkHttpClient httpClient;
   private final URI lokiEndpoint;
+  private final LokiClientConfig.PushEncoding pushEncoding;
+  private final LokiClientConfig.Compression compression;
+  private final RetryPolicy retryPolicy;
+  private final AdaptiveRateLimiter pushRateLimiter;
+  private final LokiClientMetrics metrics;
+  // Null unless the client belongs to a tenant with a concurrency limit.
+  private final ConcurrencyLimit concurrencyLimit;
+  // Null unless identical concurrent queries share one request.
+  private final SingleFlight<URI, QueryResult> queryFlights;
+  private final SingleFlight<URI, Data.ResultType> resultTypeFlights;
+
+  // Shared by the tenant clients, the result type of a query does not depend on the tenant.
+  private final Cache<String, Data.ResultType> resultTypes;
 
   private static final MediaType JsonMediaType = MediaType.parse("application/json");
+  private static final Duration TAIL_PING_INTERVAL = Duration.ofSeconds(30);
+
+  // Names of the connection pools bound to metrics, so that clients sharing a pool share a name.
+  private static final Map<ConnectionPool, String> POOL_NAMES = new WeakHashMap<>();
+  private static int poolCount = 0;
 
   public LokiClient(LokiClientConfig config) {
+    this(config, newHttpClient(config.httpClientConfig()));
+  }
+
+  /**
+   * Create a client that shares the connection pool and dispatcher of an existing OkHttp client.
+   *
+   * <p>The {@link HttpClientConfig} of the config is ignored in favor of the given client's
+   * settings. The client derives its own OkHttp client with {@link OkHttpClient#newBuilder()}, so
+   * the given client is not changed. The derived client gets the read timeout of the config and,
+   * if configured, the {@link LoadBalancerConfig load balancer} interceptor. Unless the metrics are
+   * {@link LokiClientMetrics#NOOP}, it also gets an event listener that records connection metrics,
+   * which replaces the given client's event listener, and the connection gauges are bound to the
+   * shared connection pool.
+   *
+   * @param config The client config.
+   * @param httpClient The shared OkHttp client.
+   */
+  public LokiClient(LokiClientConfig config, OkHttpClient httpClient) {
     this.lokiEndpoint = config.uri();
+    this.pushEncoding = config.pushEncoding();
+    this.compression = config.compression();
+    this.retryPolicy = config.retryPolicy();
+    this.pushRateLimiter = config.pushRateLimiter();
+    this.metrics = config.metrics();
+    this.concurrencyLimit = null;
+    this.queryFlights = config.coalesceQueries() ? new SingleFlight<>() : null;
+    this.resultTypeFlights = config.coalesceQueries() ? new SingleFlight<>() : null;
+    this.resultTypes = CacheBuilder.newBuilder().maximumSize(1000).build();
 
     OkHttpClient.Builder clientBuilder =
-        new OkHttpClient.Builder().readTimeout(Duration.ofMillis(config.readTimeout().toMillis()));
+        httpClient.newBuilder().readTimeout(Duration.ofMillis(config.readTimeout().toMillis()));
+    if (metrics != LokiClientMetrics.NOOP) {
+      clientBuilder.eventListenerFactory(MetricsEventListener.factory(metrics));
+      ConnectionPool pool = httpClient.connectionPool();
+      metrics.bindConnectionPool(poolName(pool), pool::connectionCount, pool::idleConnectionCount);
+    }
+    if (config.loadBalancer() != null) {
+      clientBuilder.addInterceptor(new LoadBalancer(config.loadBalancer()));
+    }
     this.httpClient = clientBuilder.build();
   }
 
+  private LokiClient(
+      LokiClient parent,
+      OkHttpClient httpClient,
+      AdaptiveRateLimiter limiter,
+      ConcurrencyLimit concurrencyLimit) {
+    this.httpClient = httpClient;
+    this.lokiEndpoint = parent.lokiEndpoint;
+    this.pushEncoding = parent.pushEncoding;
+    this.compression = parent.compression;
+    this.retryPolicy = parent.retryPolicy;
+    this.pushRateLimiter = limiter;
+    this.metrics = parent.metrics;
+    this.concurrencyLimit = concurrencyLimit;
+    this.queryFlights = parent.queryFlights != null ? new SingleFlight<>() : null;
+    this.resultTypeFlights = parent.resultTypeFlights != null ? new SingleFlight<>() : null;
+    this.resultTypes = parent.resultTypes;
+  }
+
+  /**
+   * Create a client that sends all pushes and queries for a tenant of a multi-tenant Loki.
+   *
+   * @param tenantId The tenant, sent as {@code X-Scope-OrgID} header.
+   * @return a client for the tenant.
+   * @see #forTenant(String, int)
+   */
+  public LokiClient forTenant(String tenantId) {
+    return forTenant(tenantId, 0);
+  }
+
+  /**
+   * Create a client that sends all pushes and queries for a tenant of a multi-tenant Loki.
+   *
+   * <p>The tenant client shares the connection pool and dispatcher with this client. It has its
+   * own push rate limiter, so that back pressure for one tenant does not slow down the others, and
+   * its own query coalescing. The concurrency limit counts requests until their response arrived.
+   * Asynchronous requests wait for a free slot before they are enqueued, so a tenant at its limit
+   * does not occupy the shared dispatcher. Tails are not limited since they stay open.
+   *
+   * @param tenantId The tenant, sent as {@code X-Scope-OrgID} header.
+   * @param maxConcurrentRequests The maximum number of concurrent requests of the tenant. The
+   *     requests are not limited if not positive.
+   * @return a client for the tenant.
+   */
+  public LokiClient forTenant(String tenantId, int maxConcurrentRequests) {
+    OkHttpClient tenantClient =
+        httpClient.newBuilder().addInterceptor(new TenantInterceptor(tenantId)).build();
+    return new LokiClient(
+        this,
+        tenantClient,
+        pushRateLimiter != null ? pushRateLimiter.withSameBounds() : null,
+        maxConcurrentRequests > 0 ? new ConcurrencyLimit(maxConcurrentRequests) : null);
+  }
+
+  private static String poolName(ConnectionPool pool) {
+    synchronized (POOL_NAMES) {
+      return POOL_NAMES.computeIfAbsent(pool, p -> "pool-" + ++poolCount);
+    }
+  }
+
+  static OkHttpClient newHttpClient(HttpClientConfig config) {
+    Dispatcher dispatcher = new Dispatcher();
+    dispatcher.setMaxRequests(config.maxRequests());
+    dispatcher.setMaxRequestsPerHost(config.maxRequestsPerHost());
+
+    OkHttpClient.Builder clientBuilder =
+        new OkHttpClient.Builder()
+            .connectTimeout(config.connectTimeout())
+            .writeTimeout(config.writeTimeout())
+            .connectionPool(
+                new ConnectionPool(
+                    config.maxIdleConnections(),
+                    config.keepAlive().toMillis(),
+                    TimeUnit.MILLISECONDS))
+            .dispatcher(dispatcher);
+    if (config.http2PriorKnowledge()) {
+      clientBuilder.protocols(List.of(Protocol.H2_PRIOR_KNOWLEDGE));
+    }
+    return clientBuilder.build();
+  }
+
   /**
    * Perform a Loki range query.
    * @param lokiQuery The LogQL query string.
@@ -55,7 +211,323 @@ public class LokiClient {
    */
   public QueryResult rangeQuery(String lokiQuery, Instant start, Instant end)
       throws LokiClientException {
-    final URI uri =
+    return rangeQuery(lokiQuery, start, end, 0);
+  }
+
+  /**
+   * Perform a Loki range query that returns at most {@code limit} log entries.
+   *
+   * @param lokiQuery The LogQL query string.
+   * @param start Start of the query time range.
+   * @param end End of the query time range.
+   * @param limit Maximum number of entries to return. Loki's default is used if not positive.
+   * @return the query response if successful.
+   * @throws LokiClientException when the HTTP response is not successful.
+   */
+  public QueryResult rangeQuery(String lokiQuery, Instant start, Instant end, int limit)
+      throws LokiClientException {
+    try {
+      return query(rangeQueryUri(lokiQuery, start, end, limit));
+    } catch (IOException e) {
+      throw new LokiClientException("Error reading range query", e);
+    }
+  }
+
+  /**
+   * Perform a Loki metric range query with a fixed evaluation step.
+   *
+   * @param lokiQuery The LogQL metric query string.
+   * @param start Start of the query time range.
+   * @param end End of the query time range.
+   * @param step Query resolution step width.
+   * @return the query response if successful.
+   * @throws LokiClientException when the HTTP response is not successful.
+   */
+  public QueryResult rangeQuery(String lokiQuery, Instant start, Instant end, Duration step)
+      throws LokiClientException {
+    try {
+      return query(rangeQueryUri(lokiQuery, start, end, 0, step));
+    } catch (IOException e) {
+      throw new LokiClientException("Error reading range query", e);
+    }
+  }
+
+  /**
+   * Perform a Loki range query without blocking the calling thread.
+   *
+   * @param lokiQuery The LogQL query string.
+   * @param start Start of the query time range.
+   * @param end End of the query time range.
+   * @param executor Parses the response and completes the future. {@code Runnable::run} uses the
+   *     OkHttp dispatcher thread.
+   * @return the query response or a {@link LokiClientException} if not successful.
+   */
+  public CompletableFuture<QueryResult> rangeQueryAsync(
+      String lokiQuery, Instant start, Instant end, Executor executor) {
+    return queryAsync(rangeQueryUri(lokiQuery, start, end, 0), executor);
+  }
+
+  /**
+   * Perform a Loki range query and stream the response to a visitor.
+   *
+   * <p>The response is parsed token by token instead of being materialized as a {@link
+   * QueryResult}, so large responses can be processed with constant memory.
+   *
+   * @param lokiQuery The LogQL query string.
+   * @param start Start of the query time range.
+   * @param end End of the query time range.
+   * @param visitor Receives the streams or metric series of the response.
+   * @return the result type of the response.
+   * @throws LokiClientException when the HTTP response is not successful.
+   * @see QueryResultReader
+   */
+  public Data.ResultType rangeQuery(
+      String lokiQuery, Instant start, Instant end, QueryResultVisitor visitor)
+      throws LokiClientException {
+    try (Response response = executeQuery(rangeQueryUri(lokiQuery, start, end, 0))) {
+      if (response.isSuccessful() && response.body() != null) {
+        return QueryResultReader.read(Gzip.responseStream(response), visitor);
+      }
+      throw badResponse(response, "");
+    } catch (IOException e) {
+      throw new LokiClientException("Error reading range query", e);
+    }
+  }
+
+  /**
+   * Perform a Loki instant query. Metric queries are evaluated at {@code time} and return a
+   * {@link Data.ResultType#Vector} or {@link Data.ResultType#Scalar} result. Log queries return
+   * {@link Data.ResultType#Streams}.
+   *
+   * @param lokiQuery The LogQL query string.
+   * @param time The evaluation time.
+   * @return the query response if successful.
+   * @throws LokiClientException when the HTTP response is not successful.
+   * @see <a href="https://grafana.com/docs/loki/latest/reference/loki-http-api/#query-logs-at-a-single-point-in-time">Loki Instant Query API</a>
+   */
+  public QueryResult instantQuery(String lokiQuery, Instant time) throws LokiClientException {
+    try {
+      return query(instantQueryUri(lokiQuery, time));
+    } catch (IOException e) {
+      throw new LokiClientException("Error reading instant query", e);
+    }
+  }
+
+  /**
+   * Perform a Loki instant query without blocking the calling thread.
+   *
+   * @param lokiQuery The LogQL query string.
+   * @param time The evaluation time.
+   * @param executor Parses the response and completes the future. {@code Runnable::run} uses the
+   *     OkHttp dispatcher thread.
+   * @return the query response or a {@link LokiClientException} if not successful.
+   */
+  public CompletableFuture<QueryResult> instantQueryAsync(
+      String lokiQuery, Instant time, Executor executor) {
+    return queryAsync(instantQueryUri(lokiQuery, time), executor);
+  }
+
+  /**
+   * Perform a range query as several concurrent range queries over adjacent sub-intervals.
+   *
+   * <p>The boundaries between sub-intervals are whole steps after the start, so that a metric query
+   * evaluates the same steps as a single range query. Each sub-interval but the last excludes its
+   * end, so log entries on a boundary are returned once. The results are merged with {@link
+   * ResultMerger} and the limit applies to the merged log entries.
+   *
+   * @param lokiQuery The LogQL query string.
+   * @param start Start of the query time range.
+   * @param end End of the query time range.
+   * @param step Query resolution step width in whole seconds. Merged metric samples are told apart
+   *     by their time in seconds, so a finer step would lose samples.
+   * @param limit Maximum number of entries. Loki's default is used per sub-interval if not
+   *     positive.
+   * @param shards Maximum number of sub-intervals.
+   * @param executor Runs the shard requests, e.g. a virtual thread per task executor.
+   * @return the merged query response if all shards were successful.
+   * @throws LokiClientException when any HTTP response is not successful.
+   */
+  public QueryResult shardedRangeQuery(
+      String lokiQuery,
+      Instant start,
+      Instant end,
+      Duration step,
+      int limit,
+      int shards,
+      Executor executor)
+      throws LokiClientException {
+    if (shards <= 0) {
+      throw new IllegalArgumentException("Number of shards must be positive");
+    }
+    if (step.getSeconds() <= 0 || step.getNano() != 0) {
+      throw new IllegalArgumentException("The step must be a positive number of seconds: " + step);
+    }
+    final long startNanos = Time.nanosFromInstant(start);
+    final long endNanos = Time.nanosFromInstant(end);
+    final long stepNanos = step.toNanos();
+    final long steps = Math.ceilDiv(Math.max(0, endNanos - startNanos), stepNanos);
+    final long shardNanos = Math.ceilDiv(steps, shards) * stepNanos;
+
+    // An empty or inverted range is sent as one query, so that Loki decides the result.
+    List<CompletableFuture<QueryResult>> futures = new ArrayList<>(shards);
+    long from = startNanos;
+    do {
+      final long to = shardNanos > 0 ? Math.min(from + shardNanos, endNanos) : endNanos;
+      final boolean last = to >= endNanos;
+      final URI uri =
+          rangeQueryUri(
+              lokiQuery, Time.instantFromNanos(from), Time.instantFromNanos(to), limit, step);
+      futures.add(
+          CompletableFuture.supplyAsync(
+              () -> {
+                try {
+                  QueryResult result = query(uri);
+                  return last ? result : before(result, to);
+                } catch (IOException e) {
+                  throw new UncheckedLokiClientException(
+                      new LokiClientException("Error reading range query", e));
+                } catch (LokiClientException e) {
+                  throw new UncheckedLokiClientException(e);
+                }
+              },
+              executor));
+      from = to;
+    } while (from < endNanos);
+
+    List<QueryResult> results = new ArrayList<>(futures.size());
+    try {
+      for (CompletableFuture<QueryResult> future : futures) {
+        results.add(future.join());
+      }
+    } catch (CompletionException e) {
+      futures.forEach(future -> future.cancel(true));
+      if (e.getCause() instanceof UncheckedLokiClientException cause) {
+        throw cause.getCause();
+      }
+      throw new LokiClientException("Error executing sharded range query", e.getCause());
+    }
+    QueryResult merged = ResultMerger.merge(results);
+    if (limit > 0 && merged.getData().getResult() instanceof Streams streams) {
+      merged.getData().setResult(ResultMerger.limit(streams, limit));
+    }
+    return merged;
+  }
+
+  /**
+   * Drop the log entries on the end of a shard that the next shard returns as well. Metric points
+   * on the boundary are deduplicated when the results are merged.
+   */
+  private static QueryResult before(QueryResult result, long endNanos) {
+    if (!(result.getData().getResult() instanceof Streams streams)) {
+      return result;
+    }
+    // The result may be shared with coalesced queries, so it is copied.
+    Data data = new Data();
+    data.setResultType(Data.ResultType.Streams);
+    data.setResult(ResultMerger.before(streams, endNanos));
+    QueryResult truncated = new QueryResult();
+    truncated.setStatus(result.getStatus());
+    truncated.setData(data);
+    return truncated;
+  }
+
+  /**
+   * Page through all log entries of a range query.
+   *
+   * <p>Each page is one range query of at most {@code pageLimit} entries. The next page is fetched
+   * in the background while the caller processes the current one.
+   *
+   * @param lokiQuery The LogQL log query string. Metric queries are not supported.
+   * @param start Start of the query time range.
+   * @param end End of the query time range.
+   * @param pageLimit Maximum number of entries per page.
+   * @return an iterator over the pages.
+   * @see RangeQueryPager
+   */
+  public RangeQueryPager rangeQueryPages(
+      String lokiQuery, Instant start, Instant end, int pageLimit) {
+    return rangeQueryPages(lokiQuery, start, end, pageLimit, RangeQueryPager.prefetcher);
+  }
+
+  /**
+   * Page through all log entries of a range query and prefetch pages on the given executor.
+   *
+   * @param lokiQuery The LogQL log query string. Metric queries are not supported.
+   * @param start Start of the query time range.
+   * @param end End of the query time range.
+   * @param pageLimit Maximum number of entries per page.
+   * @param executor Runs the page requests.
+   * @return an iterator over the pages.
+   */
+  public RangeQueryPager rangeQueryPages(
+      String lokiQuery, Instant start, Instant end, int pageLimit, Executor executor) {
+    return new RangeQueryPager(this, lokiQuery, start, end, pageLimit, executor);
+  }
+
+  /**
+   * Stream the entries of a log query as they arrive in Loki.
+   *
+   * @param lokiQuery The LogQL log query string.
+   * @param start Time of the first entry to return.
+   * @param limit Maximum number of entries Loki sends on connect. Loki's default is used if not
+   *     positive.
+   * @param listener Receives the entries on a dedicated thread.
+   * @return the running tail. Close it to stop tailing.
+   */
+  public LiveTail tail(String lokiQuery, Instant start, int limit, LiveTail.Listener listener) {
+    return tail(lokiQuery, start, limit, new TailConfig(0, null, null, null), listener);
+  }
+
+  /**
+   * Stream the entries of a log query as they arrive in Loki.
+   *
+   * @param lokiQuery The LogQL log query string.
+   * @param start Time of the first entry to return.
+   * @param limit Maximum number of entries Loki sends on connect. Loki's default is used if not
+   *     positive.
+   * @param config The queue, backpressure and reconnect config.
+   * @param listener Receives the entries on a dedicated thread.
+   * @return the running tail. Close it to stop tailing.
+   * @see LiveTail
+   */
+  public LiveTail tail(
+      String lokiQuery, Instant start, int limit, TailConfig config, LiveTail.Listener listener) {
+    // The connection idles until new entries arrive. Pings detect dead connections instead.
+    OkHttpClient tailClient =
+        httpClient.newBuilder().readTimeout(Duration.ZERO).pingInterval(TAIL_PING_INTERVAL).build();
+    return new LiveTail(
+        tailClient,
+        from -> getRequest(tailUri(lokiQuery, from, limit, config.delayFor())),
+        Time.nanosFromInstant(start),
+        config,
+        listener);
+  }
+
+  private URI tailUri(String lokiQuery, long start, int limit, Duration delayFor) {
+    HttpUrl.Builder builder =
+        new HttpUrl.Builder()
+            .scheme(this.lokiEndpoint.getScheme())
+            .host(this.lokiEndpoint.getHost())
+            .port(this.lokiEndpoint.getPort())
+            .addPathSegments("loki/api/v1/tail")
+            .addQueryParameter("query", lokiQuery)
+            .addQueryParameter("start", Long.toString(start));
+    if (limit > 0) {
+      builder.addQueryParameter("limit", Integer.toString(limit));
+    }
+    if (!delayFor.isZero()) {
+      builder.addQueryParameter("delay_for", Long.toString(delayFor.toSeconds()));
+    }
+    return builder.build().uri();
+  }
+
+  private URI rangeQueryUri(String lokiQuery, Instant start, Instant end, int limit) {
+    return rangeQueryUri(lokiQuery, start, end, limit, null);
+  }
+
+  private URI rangeQueryUri(
+      String lokiQuery, Instant start, Instant end, int limit, Duration step) {
+    HttpUrl.Builder builder =
         new HttpUrl.Builder()
             .scheme(this.lokiEndpoint.getScheme())
             .host(this.lokiEndpoint.getHost())
@@ -64,22 +536,112 @@ public class LokiClient {
             .addQueryParameter("query", lokiQuery)
             .addQueryParameter("start", Time.nanosFromInstant(start).toString())
             .addQueryParameter("end", Time.nanosFromInstant(end).toString())
-            .addQueryParameter("direction", "forward")
-            .build()
-            .uri();
+            .addQueryParameter("direction", "forward");
+    if (limit > 0) {
+      builder.addQueryParameter("limit", Integer.toString(limit));
+    }
+    if (step != null) {
+      builder.addQueryParameter("step", step.toMillis() + "ms");
+    }
+    return builder.build().uri();
+  }
 
-    try (Response response = requestUri(uri)) {
-      if (response.isSuccessful() && response.body() != null) {
-        return QueryResult.fromJSON(response.body().byteStream());
+  /**
+   * Push the entries of many streams in one request.
+   *
+   * <p>Streams with equal labels are combined and the entries of each stream are sorted by
+   * timestamp, so that Loki does not reject them as out of order. The given lists are not
+   * modified.
+   *
+   * @param streams The streams to push.
+   * @throws IOException when the request could not be sent.
+   * @throws LokiClientException when the HTTP response is not successful.
+   */
+  public void push(Collection<PushStream> streams) throws IOException, LokiClientException {
+    Map<Map<String, String>, List<LogEntry>> grouped = new LinkedHashMap<>();
+    for (PushStream stream : streams) {
+      if (!stream.entries().isEmpty()) {
+        Map<String, String> labels = LabelSetInterner.shared().intern(stream.labels());
+        grouped.computeIfAbsent(labels, k -> new ArrayList<>()).addAll(stream.entries());
       }
-      throw new LokiClientException("Bad response " + response.code() + " " + response.message());
-    } catch (IOException e) {
-      throw new LokiClientException("Error reading range query", e);
     }
+    if (grouped.isEmpty()) {
+      return;
+    }
+    for (List<LogEntry> entries : grouped.values()) {
+      // The sort is stable and close to linear for entries that are already mostly in order.
+      entries.sort(Comparator.comparingLong(LogEntry::ts));
+    }
+    pushStreams(grouped);
   }
 
   public void pushLogLine(String log, Instant timestamp, Map<String, String> labels)
       throws IOException, LokiClientException {
+    LogEntry entry = new LogEntry(Time.nanosFromInstant(timestamp), log);
+    pushStreams(Map.of(labels, List.of(entry)));
+  }
+
+  /**
+   * Push several streams in one request.
+   *
+   * @param streams The log entries grouped by their label set.
+   * @throws IOException when the request could not be sent.
+   * @throws LokiClientException when the HTTP response is not successful.
+   */
+  void pushStreams(Map<Map<String, String>, List<LogEntry>> streams)
+      throws IOException, LokiClientException {
+    execute(pushRequest(streams), LokiClient::checkPushResponse, pushRateLimiter);
+    int lines = 0;
+    for (List<LogEntry> entries : streams.values()) {
+      lines += entries.size();
+    }
+    metrics.linesPushed(lines);
+  }
+
+  /**
+   * Push a single log line without blocking the calling thread.
+   *
+   * @param log The log line.
+   * @param timestamp The timestamp of the log line.
+   * @param labels The stream labels of the log line.
+   * @param executor Completes the future.
+   * @return a future that fails with a {@link LokiClientException} if the push was not successful.
+   */
+  public CompletableFuture<Void> pushLogLineAsync(
+      String log, Instant timestamp, Map<String, String> labels, Executor executor) {
+    LogEntry entry = new LogEntry(Time.nanosFromInstant(timestamp), log);
+    final Request request;
+    try {
+      request = pushRequest(Map.of(labels, List.of(entry)));
+    } catch (IOException e) {
+      return CompletableFuture.failedFuture(
+          new LokiClientException("Error encoding push request", e));
+    }
+    return executeAsync(
+        request,
+        response -> {
+          checkPushResponse(response);
+          metrics.linesPushed(1);
+          return null;
+        },
+        pushRateLimiter,
+        executor);
+  }
+
+  private Request pushRequest(Map<Map<String, String>, List<LogEntry>> streams)
+      throws IOException {
+    RequestBody body =
+        switch (pushEncoding) {
+          case Json -> new JsonPushBody(streams);
+          case Protobuf ->
+              RequestBody.create(
+                  ProtobufPushEncoder.encode(streams), ProtobufPushEncoder.MEDIA_TYPE);
+        };
+    // Protobuf bodies are already snappy compressed.
+    return pushRequest(body, pushEncoding == LokiClientConfig.PushEncoding.Json);
+  }
+
+  private Request pushRequest(RequestBody body, boolean compressible) {
     final URI uri =
         new HttpUrl.Builder()
             .scheme(this.lokiEndpoint.getScheme())
@@ -89,46 +651,56 @@ public class LokiClient {
             .build()
             .uri();
 
-    ObjectMapper mapper = new ObjectMapper();
-    var root = mapper.createObjectNode();
-    var streams = mapper.createArrayNode();
-    var stream = mapper.createObjectNode();
-    var lbls = mapper.createObjectNode();
-    for (var pair : labels.entrySet()) {
-      lbls.put(pair.getKey(), pair.getValue());
-    }
-    var values = mapper.createArrayNode();
-    var line = mapper.createArrayNode();
-    line.add(Time.nanosFromInstant(timestamp).toString());
-    line.add(log);
-    values.add(line);
-    stream.set("stream", lbls);
-    stream.set("values", values);
-    streams.add(stream);
-    root.set("streams", streams);
-
-    String bodyStr = mapper.writeValueAsString(root);
-    RequestBody body = RequestBody.create(bodyStr, JsonMediaType);
-
     Request.Builder requestBuilder =
         new Request.Builder()
-            .post(body)
-            // TODO .header("X-Scope-OrgID", "1")
-            .url(uri.toString());
-
-    try (Response response = httpClient.newCall(requestBuilder.build()).execute()) {
-      if (!response.isSuccessful()) {
-        String error = "";
-        if (response.body() != null) {
-          error = ": " + response.body().string();
-        }
-        throw new LokiClientException(
-            "Bad response " + response.code() + " " + response.message() + error);
+            .url(uri.toString())
+            .tag(LokiClientMetrics.Operation.class, LokiClientMetrics.Operation.Push);
+    if (compression == LokiClientConfig.Compression.Gzip && compressible) {
+      requestBuilder.header("Content-Encoding", "gzip").post(Gzip.compress(body));
+    } else {
+      requestBuilder.post(body);
+    }
+    return requestBuilder.build();
+  }
+
+  /**
+   * Push a body that was encoded with {@link ProtobufPushEncoder} before, e.g. from a {@link
+   * PushSpool}.
+   */
+  void pushEncoded(byte[] protobufBody) throws IOException, LokiClientException {
+    Request request =
+        pushRequest(RequestBody.create(protobufBody, ProtobufPushEncoder.MEDIA_TYPE), false);
+    execute(request, LokiClient::checkPushResponse, pushRateLimiter);
+  }
+
+  private static Void checkPushResponse(Response response)
+      throws IOException, LokiClientException {
+    if (!response.isSuccessful()) {
+      String error = "";
+      if (response.body() != null) {
+        error = ": " + response.body().string();
       }
+      throw badResponse(response, error);
     }
+    return null;
   }
 
   public void flush() throws IOException, LokiClientException {
+    execute(flushRequest(), LokiClient::checkResponse, null);
+  }
+
+  /**
+   * Flush Loki's in-memory chunks without blocking the calling thread.
+   *
+   * @param executor Completes the future.
+   * @return a future that fails with a {@link LokiClientException} if the flush was not
+   *     successful.
+   */
+  public CompletableFuture<Void> flushAsync(Executor executor) {
+    return executeAsync(flushRequest(), LokiClient::checkResponse, null, executor);
+  }
+
+  private Request flushRequest() {
     final URI uri =
         new HttpUrl.Builder()
             .scheme(this.lokiEndpoint.getScheme())
@@ -139,49 +711,402 @@ public class LokiClient {
             .uri();
 
     Request.Builder requestBuilder =
-        new Request.Builder().post(RequestBody.create("", JsonMediaType)).url(uri.toString());
+        new Request.Builder()
+            .post(RequestBody.create("", JsonMediaType))
+            .url(uri.toString())
+            .tag(LokiClientMetrics.Operation.class, LokiClientMetrics.Operation.Flush);
+    return requestBuilder.build();
+  }
 
-    try (Response response = httpClient.newCall(requestBuilder.build()).execute()) {
-      if (!response.isSuccessful()) {
-        throw new LokiClientException("Bad response " + response.code() + " " + response.message());
-      }
+  private static Void checkResponse(Response response) throws LokiClientException {
+    if (!response.isSuccessful()) {
+      throw badResponse(response, "");
     }
+    return null;
   }
 
   public Response requestUri(URI uri) throws IOException {
-    Request.Builder requestBuilder = new Request.Builder().url(uri.toString());
-    return httpClient.newCall(requestBuilder.build()).execute();
+    return call(getRequest(uri));
+  }
+
+  /**
+   * Send a GET request without blocking the calling thread.
+   *
+   * <p>The caller must close the response.
+   *
+   * @param uri The request URI.
+   * @param executor Completes the future.
+   * @return the response or a {@link LokiClientException} if the request could not be sent.
+   */
+  public CompletableFuture<Response> requestUriAsync(URI uri, Executor executor) {
+    return callAsync(() -> AsyncCall.enqueueUnclosed(httpClient, getRequest(uri), executor));
+  }
+
+  private static Request getRequest(URI uri) {
+    return new Request.Builder()
+        .url(uri.toString())
+        .tag(LokiClientMetrics.Operation.class, LokiClientMetrics.Operation.Query)
+        .build();
+  }
+
+  /**
+   * Build a query request. With gzip compression the client asks for a gzip encoded response
+   * itself, which turns off OkHttp's transparent decompression, and decompresses the body while
+   * parsing it.
+   */
+  private Request queryRequest(URI uri) {
+    Request.Builder requestBuilder =
+        new Request.Builder()
+            .url(uri.toString())
+            .tag(LokiClientMetrics.Operation.class, LokiClientMetrics.Operation.Query);
+    if (compression == LokiClientConfig.Compression.Gzip) {
+      requestBuilder.header("Accept-Encoding", "gzip");
+    }
+    return requestBuilder.build();
+  }
+
+  private Response executeQuery(URI uri) throws IOException {
+    return call(queryRequest(uri));
+  }
+
+  /** Execute a request within the tenant's concurrency limit. */
+  private Response call(Request request) throws IOException {
+    if (concurrencyLimit == null) {
+      return httpClient.newCall(request).execute();
+    }
+    concurrencyLimit.acquire();
+    try {
+      return httpClient.newCall(request).execute();
+    } finally {
+      concurrencyLimit.release();
+    }
+  }
+
+  /** Enqueue a call once the tenant's concurrency limit allows it. */
+  private <T> CompletableFuture<T> callAsync(Supplier<CompletableFuture<T>> call) {
+    return concurrencyLimit != null ? concurrencyLimit.enqueue(call) : call.get();
   }
 
+  /**
+   * Execute a request and handle its response. Failures to send the request and error responses
+   * are retried according to the retry policy. Failures of the handler, e.g. a body that cannot be
+   * parsed, are thrown right away since the same response would fail again. The optional rate
+   * limiter throttles attempts and adapts to 429 and 5xx responses.
+   */
+  private <T> T execute(
+      Request request, AsyncCall.ResponseHandler<T> handler, AdaptiveRateLimiter limiter)
+      throws IOException, LokiClientException {
+    int attempt = 0;
+    while (true) {
+      if (limiter != null) {
+        limiter.acquire();
+      }
+      Response response;
+      try {
+        response = call(request);
+      } catch (IOException e) {
+        // The request did not get a response, e.g. the connection was refused or reset.
+        backOff(request, ++attempt, e);
+        continue;
+      }
+      try (response) {
+        T result = handler.handle(response);
+        if (limiter != null) {
+          limiter.onSuccess();
+        }
+        return result;
+      } catch (LokiClientException e) {
+        if (!isErrorResponse(e)) {
+          throw e;
+        }
+        if (limiter != null && isBackpressure(e)) {
+          limiter.onBackpressure();
+        }
+        backOff(request, ++attempt, e);
+      }
+    }
+  }
+
+  /** Wait before the next attempt or throw the failure when the retry policy gives up. */
+  private void backOff(Request request, int attempt, Exception failure)
+      throws IOException, LokiClientException {
+    Optional<Duration> delay = retryPolicy.nextDelay(attempt, failure);
+    if (delay.isEmpty()) {
+      rethrow(failure);
+      return;
+    }
+    metrics.requestRetried(request.tag(LokiClientMetrics.Operation.class));
+    try {
+      TimeUnit.NANOSECONDS.sleep(delay.get().toNanos());
+    } catch (InterruptedException interrupted) {
+      Thread.currentThread().interrupt();
+      rethrow(failure);
+    }
+  }
+
+  private static void rethrow(Exception failure) throws IOException, LokiClientException {
+    if (failure instanceof IOException e) {
+      throw e;
+    }
+    throw (LokiClientException) failure;
+  }
+
+  /** Returns true for a failure that carries an error status, as opposed to a failed handler. */
+  private static boolean isErrorResponse(LokiClientException e) {
+    return e.getStatusCode() != -1;
+  }
+
+  private static boolean isBackpressure(LokiClientException e) {
+    return e.getStatusCode() == 429 || e.getStatusCode() >= 500;
+  }
+
+  /**
+   * Like {@link #execute} but without blocking the calling thread. Waiting for a permit of the rate
+   * limiter and for the next attempt does not block a thread either. Cancelling the returned future
+   * cancels the current attempt and stops retries.
+   */
+  private <T> CompletableFuture<T> executeAsync(
+      Request request,
+      AsyncCall.ResponseHandler<T> handler,
+      AdaptiveRateLimiter limiter,
+      Executor executor) {
+    CompletableFuture<T> result = new CompletableFuture<>();
+    attemptAsync(request, handler, limiter, executor, 1, result);
+    return result;
+  }
+
+  private <T> void attemptAsync(
+      Request request,
+      AsyncCall.ResponseHandler<T> handler,
+      AdaptiveRateLimiter limiter,
+      Executor executor,
+      int attempt,
+      CompletableFuture<T> result) {
+    CompletableFuture<Void> permit =
+        limiter != null ? limiter.acquireAsync() : CompletableFuture.completedFuture(null);
+    permit.thenRun(
+        () -> {
+          if (result.isDone()) {
+            return;
+          }
+          CompletableFuture<Response> call =
+              callAsync(() -> AsyncCall.enqueueUnclosed(httpClient, request, executor));
+          result.whenComplete(
+              (value, error) -> {
+                if (result.isCancelled()) {
+                  call.cancel(false);
+                }
+              });
+          call.whenComplete(
+              (response, error) -> {
+                if (error != null) {
+                  if (call.isCancelled() || !(error instanceof LokiClientException failure)) {
+                    result.completeExceptionally(error);
+                  } else {
+                    // The request did not get a response.
+                    retryAsync(request, handler, limiter, executor, attempt, result, failure);
+                  }
+                  return;
+                }
+                T value;
+                try (response) {
+                  if (result.isDone()) {
+                    return;
+                  }
+                  value = handler.handle(response);
+                } catch (LokiClientException e) {
+                  if (!isErrorResponse(e)) {
+                    result.completeExceptionally(e);
+                    return;
+                  }
+                  if (limiter != null && isBackpressure(e)) {
+                    limiter.onBackpressure();
+                  }
+                  retryAsync(request, handler, limiter, executor, attempt, result, e);
+                  return;
+                } catch (IOException e) {
+                  result.completeExceptionally(
+                      new LokiClientException("Error reading response", e));
+                  return;
+                } catch (RuntimeException e) {
+                  result.completeExceptionally(e);
+                  return;
+                }
+                if (limiter != null) {
+                  limiter.onSuccess();
+                }
+                result.complete(value);
+              });
+        });
+  }
+
+  /** Schedule the next attempt or fail the result when the retry policy gives up. */
+  private <T> void retryAsync(
+      Request request,
+      AsyncCall.ResponseHandler<T> handler,
+      AdaptiveRateLimiter limiter,
+      Executor executor,
+      int attempt,
+      CompletableFuture<T> result,
+      LokiClientException failure) {
+    Optional<Duration> delay = retryPolicy.nextDelay(attempt, failure);
+    if (delay.isEmpty() || result.isDone()) {
+      result.completeExceptionally(failure);
+      return;
+    }
+    metrics.requestRetried(request.tag(LokiClientMetrics.Operation.class));
+    CompletableFuture.delayedExecutor(delay.get().toNanos(), TimeUnit.NANOSECONDS)
+        .execute(() -> attemptAsync(request, handler, limiter, executor, attempt + 1, result));
+  }
+
+  private static LokiClientException badResponse(Response response, String detail) {
+    return new LokiClientException(
+        "Bad response " + response.code() + " " + response.message() + detail,
+        response.code(),
+        retryAfter(response));
+  }
+
+  /** Parse a Retry-After header in seconds or as an HTTP date. */
+  private static Duration retryAfter(Response response) {
+    String value = response.header("Retry-After");
+    if (value == null) {
+      return null;
+    }
+    try {
+      return Duration.ofSeconds(Long.parseLong(value.trim()));
+    } catch (NumberFormatException e) {
+      try {
+        Instant at = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+        Duration delay = Duration.between(Instant.now(), at);
+        return delay.isNegative() ? Duration.ZERO : delay;
+      } catch (DateTimeParseException invalid) {
+        return null;
+      }
+    }
+  }
+
+  /**
+   * Determine whether a query returns log streams or metric series.
+   *
+   * <p>Most queries are classified locally without a request. Only queries the classifier cannot
+   * decide are sent to Loki as an instant query, and their result types are cached.
+   *
+   * @param query The LogQL query string.
+   * @return the result type of a range query.
+   * @throws LokiClientException when the HTTP response is not successful.
+   */
   public Data.ResultType getExpectedResultType(String query) throws LokiClientException {
-    // Execute instant query to determine whether the query is a log or metric expression.
-    final URI uri =
+    Optional<Data.ResultType> known = knownResultType(query);
+    if (known.isPresent()) {
+      return known.get();
+    }
+    URI uri = instantQueryUri(query, null);
+    SingleFlight.Call<Data.ResultType> call =
+        () ->
+            execute(
+                queryRequest(uri),
+                response -> cacheResultType(query, readResultType(response)),
+                null);
+    try {
+      return resultTypeFlights != null
+          ? resultTypeFlights.execute(flightKey(uri), call)
+          : call.call();
+    } catch (IOException e) {
+      throw new LokiClientException("Error reading instant query", e);
+    }
+  }
+
+  /**
+   * Determine the result type of a query without blocking the calling thread.
+   *
+   * @param query The LogQL query string.
+   * @param executor Parses the response and completes the future.
+   * @return the result type or a {@link LokiClientException} if the query was not successful.
+   */
+  public CompletableFuture<Data.ResultType> getExpectedResultTypeAsync(
+      String query, Executor executor) {
+    Optional<Data.ResultType> known = knownResultType(query);
+    if (known.isPresent()) {
+      return CompletableFuture.completedFuture(known.get());
+    }
+    URI uri = instantQueryUri(query, null);
+    Supplier<CompletableFuture<Data.ResultType>> call =
+        () ->
+            executeAsync(
+                queryRequest(uri),
+                response -> cacheResultType(query, readResultType(response)),
+                null,
+                executor);
+    return resultTypeFlights != null
+        ? resultTypeFlights.executeAsync(flightKey(uri), call)
+        : call.get();
+  }
+
+  private Optional<Data.ResultType> knownResultType(String query) {
+    return LogQL.classify(query)
+        .or(() -> Optional.ofNullable(resultTypes.getIfPresent(LogQL.normalize(query))));
+  }
+
+  private Data.ResultType cacheResultType(String query, Data.ResultType resultType) {
+    resultTypes.put(LogQL.normalize(query), resultType);
+    return resultType;
+  }
+
+  private URI instantQueryUri(String query, Instant time) {
+    HttpUrl.Builder builder =
         new HttpUrl.Builder()
             .scheme(this.lokiEndpoint.getScheme())
             .host(this.lokiEndpoint.getHost())
             .port(this.lokiEndpoint.getPort())
             .addPathSegments("loki/api/v1/query")
-            .addQueryParameter("query", query)
-            .build()
-            .uri();
+            .addQueryParameter("query", query);
+    if (time != null) {
+      builder.addQueryParameter("time", Time.nanosFromInstant(time).toString());
+    }
+    return builder.build().uri();
+  }
 
-    try (Response response = requestUri(uri)) {
-      if (response.isSuccessful() && response.body() != null) {
-        return deserializeResultType(response.body().byteStream());
-      }
-      throw new LokiClientException("Bad response " + response.code() + " " + response.message());
-    } catch (IOException e) {
-      throw new LokiClientException("Error reading instant query", e);
+  /**
+   * Key of a coalesced query with insignificant whitespace and comments removed, so that queries
+   * that only differ in formatting share a request. The request itself keeps the original query.
+   */
+  private static URI flightKey(URI uri) {
+    HttpUrl url = HttpUrl.get(uri);
+    String query = url.queryParameter("query");
+    if (query == null) {
+      return uri;
     }
+    return url.newBuilder().setQueryParameter("query", LogQL.normalize(query)).build().uri();
   }
 
-  private Data.ResultType deserializeResultType(InputStream input) throws IOException {
-    ObjectMapper mapper = new ObjectMapper();
-    var node = mapper.readTree(input);
-    if (Objects.equals(node.get("data").get("resultType").asText(), "streams")) {
-      return Data.ResultType.Streams;
-    } else {
-      return Data.ResultType.Matrix;
+  /** Execute a query or wait for an identical query in flight. */
+  private QueryResult query(URI uri) throws IOException, LokiClientException {
+    SingleFlight.Call<QueryResult> call =
+        () -> execute(queryRequest(uri), this::readQueryResult, null);
+    return queryFlights != null ? queryFlights.execute(flightKey(uri), call) : call.call();
+  }
+
+  private CompletableFuture<QueryResult> queryAsync(URI uri, Executor executor) {
+    Supplier<CompletableFuture<QueryResult>> call =
+        () -> executeAsync(queryRequest(uri), this::readQueryResult, null, executor);
+    return queryFlights != null ? queryFlights.executeAsync(flightKey(uri), call) : call.get();
+  }
+
+  private QueryResult readQueryResult(Response response) throws IOException, LokiClientException {
+    if (response.isSuccessful() && response.body() != null) {
+      long start = System.nanoTime();
+      QueryResult result = QueryResult.fromJSON(Gzip.responseStream(response));
+      metrics.queryParsed(System.nanoTime() - start);
+      return result;
+    }
+    throw badResponse(response, "");
+  }
+
+  private static Data.ResultType readResultType(Response response)
+      throws IOException, LokiClientException {
+    if (response.isSuccessful() && response.body() != null) {
+      return QueryResultReader.readResultType(Gzip.responseStream(response));
     }
+    throw badResponse(response, "");
   }
 }
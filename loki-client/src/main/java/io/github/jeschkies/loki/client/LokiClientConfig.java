@@ -3,7 +3,51 @@ package io.github.jeschkies.loki.client;
 import java.net.URI;
 import java.time.Duration;
 
-public record LokiClientConfig(URI uri, Duration readTimeout) {
+/**
+ * Configuration of a {@link LokiClient}.
+ *
+ * <p>Null values fall back to the defaults. Use {@link #builder(URI)} to only set some options.
+ *
+ * @param uri The Loki endpoint.
+ * @param readTimeout Timeout for reading a response.
+ * @param pushEncoding The body format of push requests.
+ * @param httpClientConfig Settings of the underlying {@code OkHttpClient}.
+ * @param compression The compression of push and query bodies.
+ * @param retryPolicy Decides whether and when failed requests are retried.
+ * @param pushRateLimiter Limits the push rate or null to not limit pushes.
+ * @param metrics Receives request and push metrics.
+ * @param coalesceQueries Let identical concurrent queries share one request. All callers get the
+ *     same {@link io.github.jeschkies.loki.client.model.QueryResult} instance, which must not be
+ *     modified.
+ * @param loadBalancer Separate push and query endpoints or null to send all requests to the uri.
+ */
+public record LokiClientConfig(
+    URI uri,
+    Duration readTimeout,
+    PushEncoding pushEncoding,
+    HttpClientConfig httpClientConfig,
+    Compression compression,
+    RetryPolicy retryPolicy,
+    AdaptiveRateLimiter pushRateLimiter,
+    LokiClientMetrics metrics,
+    boolean coalesceQueries,
+    LoadBalancerConfig loadBalancer) {
+  /** The body format of push requests. */
+  public enum PushEncoding {
+    /** JSON push body with content type application/json. */
+    Json,
+    /** Snappy compressed protobuf push body with content type application/x-protobuf. */
+    Protobuf;
+  }
+
+  /** The compression of push request bodies and query response bodies. */
+  public enum Compression {
+    /** Send push bodies uncompressed and let OkHttp negotiate the response encoding. */
+    None,
+    /** Gzip JSON push bodies and request gzip encoded query responses. */
+    Gzip;
+  }
+
   public LokiClientConfig {
     if (uri == null) {
       uri = URI.create("http://localhost:3100");
@@ -11,5 +55,111 @@ public record LokiClientConfig(URI uri, Duration readTimeout) {
     if (readTimeout == null) {
       readTimeout = Duration.ofSeconds(10);
     }
+    if (pushEncoding == null) {
+      pushEncoding = PushEncoding.Json;
+    }
+    if (httpClientConfig == null) {
+      httpClientConfig = HttpClientConfig.defaults();
+    }
+    if (compression == null) {
+      compression = Compression.None;
+    }
+    if (retryPolicy == null) {
+      retryPolicy = RetryPolicy.none();
+    }
+    if (metrics == null) {
+      metrics = LokiClientMetrics.NOOP;
+    }
+  }
+
+  public LokiClientConfig(URI uri, Duration readTimeout) {
+    this(uri, readTimeout, null, null, null, null, null, null, false, null);
+  }
+
+  /**
+   * Start a config with all options set to their defaults.
+   *
+   * @param uri The Loki endpoint.
+   * @return a builder for the config.
+   */
+  public static Builder builder(URI uri) {
+    return new Builder(uri);
+  }
+
+  /** Builds a {@link LokiClientConfig} from the options that differ from the defaults. */
+  public static final class Builder {
+    private final URI uri;
+    private Duration readTimeout;
+    private PushEncoding pushEncoding;
+    private HttpClientConfig httpClientConfig;
+    private Compression compression;
+    private RetryPolicy retryPolicy;
+    private AdaptiveRateLimiter pushRateLimiter;
+    private LokiClientMetrics metrics;
+    private boolean coalesceQueries;
+    private LoadBalancerConfig loadBalancer;
+
+    private Builder(URI uri) {
+      this.uri = uri;
+    }
+
+    public Builder readTimeout(Duration readTimeout) {
+      this.readTimeout = readTimeout;
+      return this;
+    }
+
+    public Builder pushEncoding(PushEncoding pushEncoding) {
+      this.pushEncoding = pushEncoding;
+      return this;
+    }
+
+    public Builder httpClientConfig(HttpClientConfig httpClientConfig) {
+      this.httpClientConfig = httpClientConfig;
+      return this;
+    }
+
+    public Builder compression(Compression compression) {
+      this.compression = compression;
+      return this;
+    }
+
+    public Builder retryPolicy(RetryPolicy retryPolicy) {
+      this.retryPolicy = retryPolicy;
+      return this;
+    }
+
+    public Builder pushRateLimiter(AdaptiveRateLimiter pushRateLimiter) {
+      this.pushRateLimiter = pushRateLimiter;
+      return this;
+    }
+
+    public Builder metrics(LokiClientMetrics metrics) {
+      this.metrics = metrics;
+      return this;
+    }
+
+    public Builder coalesceQueries(boolean coalesceQueries) {
+      this.coalesceQueries = coalesceQueries;
+      return this;
+    }
+
+    public Builder loadBalancer(LoadBalancerConfig loadBalancer) {
+      this.loadBalancer = loadBalancer;
+      return this;
+    }
+
+    public LokiClientConfig build() {
+      return new LokiClientConfig(
+          uri,
+          readTimeout,
+          pushEncoding,
+          httpClientConfig,
+          compression,
+          retryPolicy,
+          pushRateLimiter,
+          metrics,
+          coalesceQueries,
+          loadBalancer);
+    }
   }
 }
@@ -1,11 +1,39 @@
 package io.github.jeschkies.loki.client;
 
+import java.time.Duration;
+import java.util.Optional;
+
 public class LokiClientException extends Exception {
+  private final int statusCode;
+  private final Duration retryAfter;
+
   public LokiClientException(String message) {
+    this(message, -1);
+  }
+
+  public LokiClientException(String message, int statusCode) {
+    this(message, statusCode, null);
+  }
+
+  public LokiClientException(String message, int statusCode, Duration retryAfter) {
     super(message);
+    this.statusCode = statusCode;
+    this.retryAfter = retryAfter;
   }
 
   public LokiClientException(String message, Throwable cause) {
     super(message, cause);
+    this.statusCode = -1;
+    this.retryAfter = null;
+  }
+
+  /** Returns the HTTP status code of the failed response or -1 if there was no response. */
+  public int getStatusCode() {
+    return statusCode;
+  }
+
+  /** Returns the delay the server asked for with a Retry-After header. */
+  public Optional<Duration> getRetryAfter() {
+    return Optional.ofNullable(retryAfter);
   }
 }
@@ -0,0 +1,99 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.jeschkies.loki.client;
+
+import java.util.function.IntSupplier;
+
+/**
+ * Receives measurements of the client's requests, parsing and connections.
+ *
+ * <p>All methods have no-op defaults, so implementations only override what they record. They are
+ * called on the threads that do the work and must not block.
+ */
+public interface LokiClientMetrics {
+  /** Metrics that record nothing. */
+  LokiClientMetrics NOOP = new LokiClientMetrics() {};
+
+  /** The kind of request a measurement belongs to. */
+  enum Operation {
+    Push,
+    Query,
+    Flush;
+  }
+
+  /**
+   * Called when an HTTP call finished. Each attempt of a retried request is a call.
+   *
+   * @param operation The kind of request.
+   * @param statusCode The HTTP status code or -1 if no response was received.
+   * @param latencyNanos The time from the start of the call until the response body was closed.
+   */
+  default void requestCompleted(Operation operation, int statusCode, long latencyNanos) {}
+
+  /**
+   * Called when a request body was sent.
+   *
+   * @param operation The kind of request.
+   * @param bytes The number of bytes sent, after compression.
+   */
+  default void requestBytes(Operation operation, long bytes) {}
+
+  /**
+   * Called when a response body was read.
+   *
+   * @param operation The kind of request.
+   * @param bytes The number of bytes received, before decompression.
+   */
+  default void responseBytes(Operation operation, long bytes) {}
+
+  /**
+   * Called before a failed request is sent again.
+   *
+   * @param operation The kind of request.
+   */
+  default void requestRetried(Operation operation) {}
+
+  /**
+   * Called when a query response was read into a {@link
+   * io.github.jeschkies.loki.client.model.QueryResult}.
+   *
+   * @param parseNanos The time to read and parse the response body.
+   */
+  default void queryParsed(long parseNanos) {}
+
+  /**
+   * Called when Loki accepted pushed log lines.
+   *
+   * @param lines The number of lines in the push request.
+   */
+  default void linesPushed(int lines) {}
+
+  /**
+   * Called when the client opened a new connection to Loki.
+   *
+   * @param connectNanos The time to establish the connection including the TLS handshake.
+   */
+  default void connectionOpened(long connectNanos) {}
+
+  /**
+   * Called once when a client is created with suppliers of its connection pool state. Clients that
+   * share an OkHttp client share its connection pool and pass the same pool name.
+   *
+   * @param pool The name of the connection pool, unique per pool, e.g. {@code pool-1}.
+   * @param connectionCount Supplies the number of open connections.
+   * @param idleConnectionCount Supplies the number of idle connections.
+   */
+  default void bindConnectionPool(
+      String pool, IntSupplier connectionCount, IntSupplier idleConnectionCount) {}
+}
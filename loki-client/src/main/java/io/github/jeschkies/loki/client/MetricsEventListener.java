@@ -0,0 +1,98 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.jeschkies.loki.client;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import okhttp3.Call;
+import okhttp3.EventListener;
+import okhttp3.Protocol;
+import okhttp3.Response;
+
+/**
+ * Reports the timings and sizes of OkHttp calls to {@link LokiClientMetrics}.
+ *
+ * <p>One instance is created per call. Calls without a {@link LokiClientMetrics.Operation} tag
+ * only report new connections.
+ */
+final class MetricsEventListener extends EventListener {
+  private final LokiClientMetrics metrics;
+  private final LokiClientMetrics.Operation operation;
+  private long callStart;
+  private long connectStart;
+  private int statusCode = -1;
+
+  private MetricsEventListener(LokiClientMetrics metrics, LokiClientMetrics.Operation operation) {
+    this.metrics = metrics;
+    this.operation = operation;
+  }
+
+  static EventListener.Factory factory(LokiClientMetrics metrics) {
+    return call ->
+        new MetricsEventListener(metrics, call.request().tag(LokiClientMetrics.Operation.class));
+  }
+
+  @Override
+  public void callStart(Call call) {
+    callStart = System.nanoTime();
+  }
+
+  @Override
+  public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+    connectStart = System.nanoTime();
+  }
+
+  @Override
+  public void connectEnd(
+      Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol) {
+    metrics.connectionOpened(System.nanoTime() - connectStart);
+  }
+
+  @Override
+  public void requestBodyEnd(Call call, long byteCount) {
+    if (operation != null) {
+      metrics.requestBytes(operation, byteCount);
+    }
+  }
+
+  @Override
+  public void responseHeadersEnd(Call call, Response response) {
+    statusCode = response.code();
+  }
+
+  @Override
+  public void responseBodyEnd(Call call, long byteCount) {
+    if (operation != null) {
+      metrics.responseBytes(operation, byteCount);
+    }
+  }
+
+  @Override
+  public void callEnd(Call call) {
+    completed();
+  }
+
+  @Override
+  public void callFailed(Call call, IOException ioe) {
+    statusCode = -1;
+    completed();
+  }
+
+  private void completed() {
+    if (operation != null) {
+      metrics.requestCompleted(operation, statusCode, System.nanoTime() - callStart);
+    }
+  }
+}
@@ -0,0 +1,177 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.jeschkies.loki.client;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Pushes log lines of many tenants asynchronously in batches.
+ *
+ * <p>Every tenant gets its own {@link BatchingPusher} on a {@link LokiClient#forTenant(String,
+ * int) tenant client}, with its own queue and sender thread. A tenant that logs more than Loki
+ * accepts fills up only its own queue and does not delay the batches of other tenants. All tenants
+ * share the connection pool of the client.
+ *
+ * <p>Pushers are created when a tenant pushes its first line and kept until they are closed. Call
+ * {@link #closeIdle(Duration)} periodically to stop the sender threads of tenants that stopped
+ * logging. They get a new pusher when they push again.
+ */
+public class MultiTenantPusher implements Closeable {
+  private static final class TenantPusher {
+    final BatchingPusher pusher;
+    volatile long lastPushNanos = System.nanoTime();
+
+    TenantPusher(BatchingPusher pusher) {
+      this.pusher = pusher;
+    }
+  }
+
+  private final LokiClient client;
+  private final BatchingPusherConfig config;
+  private final int maxConcurrentRequestsPerTenant;
+  // Pushers are only added and removed while holding the lock of the map.
+  private final Map<String, TenantPusher> pushers = new ConcurrentHashMap<>();
+  private boolean closed = false;
+
+  /**
+   * Create a pusher for many tenants.
+   *
+   * @param client The client whose connection pool is shared by all tenants.
+   * @param config The batching config of each tenant.
+   * @param maxConcurrentRequestsPerTenant The maximum number of concurrent requests of a tenant.
+   *     The requests are not limited if not positive.
+   */
+  public MultiTenantPusher(
+      LokiClient client, BatchingPusherConfig config, int maxConcurrentRequestsPerTenant) {
+    this.client = client;
+    this.config = config;
+    this.maxConcurrentRequestsPerTenant = maxConcurrentRequestsPerTenant;
+  }
+
+  /**
+   * Enqueue a log line of a tenant.
+   *
+   * @param tenantId The tenant, sent as {@code X-Scope-OrgID} header.
+   * @param log The log line.
+   * @param timestamp The timestamp of the log line.
+   * @param labels The stream labels of the log line.
+   * @return false if the line was dropped.
+   * @throws InterruptedException when interrupted while waiting for space in the tenant's queue.
+   * @throws IllegalStateException when the pusher is closed.
+   */
+  public boolean push(String tenantId, String log, Instant timestamp, Map<String, String> labels)
+      throws InterruptedException {
+    while (true) {
+      TenantPusher tenant = pushers.get(tenantId);
+      if (tenant == null) {
+        tenant = open(tenantId);
+      }
+      tenant.lastPushNanos = System.nanoTime();
+      try {
+        return tenant.pusher.push(log, timestamp, labels);
+      } catch (IllegalStateException e) {
+        // The tenant's pusher was closed because it was idle. Retry with a new one, unless this
+        // pusher is closed as well.
+        if (pushers.get(tenantId) == tenant) {
+          throw e;
+        }
+      }
+    }
+  }
+
+  /** Returns the tenants that have a pusher. */
+  public Set<String> getTenants() {
+    return Set.copyOf(pushers.keySet());
+  }
+
+  /** Returns the number of lines of a tenant dropped because its queue was full. */
+  public long getDroppedLines(String tenantId) {
+    TenantPusher tenant = pushers.get(tenantId);
+    return tenant != null ? tenant.pusher.getDroppedLines() : 0;
+  }
+
+  /** Returns the number of lines of a tenant that were part of a failed push request. */
+  public long getFailedLines(String tenantId) {
+    TenantPusher tenant = pushers.get(tenantId);
+    return tenant != null ? tenant.pusher.getFailedLines() : 0;
+  }
+
+  /** Returns the number of lines of a tenant waiting to be sent. */
+  public int getQueueDepth(String tenantId) {
+    TenantPusher tenant = pushers.get(tenantId);
+    return tenant != null ? tenant.pusher.getQueueDepth() : 0;
+  }
+
+  /**
+   * Close the pushers of tenants that did not push for a while. Their pending lines are sent
+   * first. The counters of closed tenants start from zero when they push again.
+   *
+   * @param idleTime How long a tenant did not push.
+   * @return the tenants whose pushers were closed.
+   */
+  public Set<String> closeIdle(Duration idleTime) {
+    long now = System.nanoTime();
+    List<TenantPusher> idle = new ArrayList<>();
+    Set<String> tenants = new HashSet<>();
+    synchronized (pushers) {
+      pushers
+          .entrySet()
+          .removeIf(
+              entry -> {
+                TenantPusher tenant = entry.getValue();
+                if (now - tenant.lastPushNanos < idleTime.toNanos()
+                    || tenant.pusher.getQueueDepth() > 0) {
+                  return false;
+                }
+                idle.add(tenant);
+                tenants.add(entry.getKey());
+                return true;
+              });
+    }
+    idle.forEach(tenant -> tenant.pusher.close());
+    return tenants;
+  }
+
+  /** Stop accepting new lines, send all pending lines and stop the sender threads. */
+  @Override
+  public void close() {
+    synchronized (pushers) {
+      closed = true;
+    }
+    // No pusher is added once closed is set.
+    pushers.values().forEach(tenant -> tenant.pusher.close());
+  }
+
+  private TenantPusher open(String tenantId) {
+    synchronized (pushers) {
+      if (closed) {
+        throw new IllegalStateException("Pusher is closed");
+      }
+      return pushers.computeIfAbsent(
+          tenantId,
+          id ->
+              new TenantPusher(
+                  new BatchingPusher(
+                      client.forTenant(id, maxConcurrentRequestsPerTenant), config)));
+    }
+  }
+}
@@ -0,0 +1,211 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.jeschkies.loki.client;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+import io.airlift.compress.snappy.SnappyCompressor;
+import io.airlift.compress.snappy.SnappyDecompressor;
+import io.github.jeschkies.loki.client.model.LogEntry;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import okhttp3.MediaType;
+
+/**
+ * Encodes push requests in Loki's native snappy compressed protobuf format.
+ *
+ * <p>The messages are written by hand so that we do not need generated classes:
+ *
+ * <pre>
+ * message PushRequest { repeated StreamAdapter streams = 1; }
+ * message StreamAdapter { string labels = 1; repeated EntryAdapter entries = 2; }
+ * message EntryAdapter {
+ *   google.protobuf.Timestamp timestamp = 1;
+ *   string line = 2;
+ *   repeated LabelPairAdapter structuredMetadata = 3;
+ * }
+ * message LabelPairAdapter { string name = 1; string value = 2; }
+ * </pre>
+ *
+ * @see <a href="https://github.com/grafana/loki/blob/main/pkg/push/push.proto">push.proto</a>
+ */
+final class ProtobufPushEncoder {
+  static final MediaType MEDIA_TYPE = MediaType.parse("application/x-protobuf");
+
+  private static final int NANOS_PER_SECOND = 1_000_000_000;
+
+  private ProtobufPushEncoder() {
+    throw new UnsupportedOperationException("This is a utility class and cannot be instantiated");
+  }
+
+  /** Returns the snappy compressed protobuf push request. */
+  static byte[] encode(Map<Map<String, String>, List<LogEntry>> streams) throws IOException {
+    byte[] raw = encodePushRequest(streams);
+    SnappyCompressor compressor = new SnappyCompressor();
+    byte[] compressed = new byte[compressor.maxCompressedLength(raw.length)];
+    int length = compressor.compress(raw, 0, raw.length, compressed, 0, compressed.length);
+    return Arrays.copyOf(compressed, length);
+  }
+
+  /**
+   * Count the log entries of an encoded push request, e.g. to account for a spooled request that
+   * Loki rejected.
+   *
+   * @param compressed The snappy compressed protobuf push request.
+   * @return the number of entries of all streams.
+   * @throws IOException when the request is not a valid push request.
+   */
+  static int countEntries(byte[] compressed) throws IOException {
+    byte[] raw;
+    try {
+      raw = new byte[SnappyDecompressor.getUncompressedLength(compressed, 0)];
+      new SnappyDecompressor().decompress(compressed, 0, compressed.length, raw, 0, raw.length);
+    } catch (RuntimeException e) {
+      throw new IOException("Invalid snappy compressed push request", e);
+    }
+    CodedInputStream request = CodedInputStream.newInstance(raw);
+    int entries = 0;
+    int tag;
+    while ((tag = request.readTag()) != 0) {
+      if (WireFormat.getTagFieldNumber(tag) != 1) {
+        request.skipField(tag);
+        continue;
+      }
+      CodedInputStream stream = request.readBytes().newCodedInput();
+      while ((tag = stream.readTag()) != 0) {
+        if (WireFormat.getTagFieldNumber(tag) == 2) {
+          entries++;
+        }
+        stream.skipField(tag);
+      }
+    }
+    return entries;
+  }
+
+  /** Returns the uncompressed protobuf push request. */
+  static byte[] encodePushRequest(Map<Map<String, String>, List<LogEntry>> streams)
+      throws IOException {
+    int size = 0;
+    for (var stream : streams.entrySet()) {
+      size += lengthDelimitedSize(1, streamSize(formatLabels(stream.getKey()), stream.getValue()));
+    }
+
+    byte[] buffer = new byte[size];
+    CodedOutputStream out = CodedOutputStream.newInstance(buffer);
+    for (var stream : streams.entrySet()) {
+      String labels = formatLabels(stream.getKey());
+      out.writeTag(1, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+      out.writeUInt32NoTag(streamSize(labels, stream.getValue()));
+      out.writeString(1, labels);
+      for (LogEntry entry : stream.getValue()) {
+        long seconds = Math.floorDiv(entry.ts(), NANOS_PER_SECOND);
+        int nanos = (int) Math.floorMod(entry.ts(), NANOS_PER_SECOND);
+        out.writeTag(2, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+        out.writeUInt32NoTag(entrySize(seconds, nanos, entry));
+        out.writeTag(1, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+        out.writeUInt32NoTag(timestampSize(seconds, nanos));
+        if (seconds != 0) {
+          out.writeInt64(1, seconds);
+        }
+        if (nanos != 0) {
+          out.writeInt32(2, nanos);
+        }
+        out.writeString(2, entry.getLine());
+        for (var pair : entry.getStructuredMetadata().entrySet()) {
+          out.writeTag(3, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+          out.writeUInt32NoTag(labelPairSize(pair.getKey(), pair.getValue()));
+          out.writeString(1, pair.getKey());
+          out.writeString(2, pair.getValue());
+        }
+      }
+    }
+    out.checkNoSpaceLeft();
+    return buffer;
+  }
+
+  /**
+   * Format labels the way Loki expects them in a push request, e.g. {@code {app="foo"}}.
+   *
+   * @param labels The stream labels.
+   * @return the label set in LogQL stream selector syntax.
+   */
+  static String formatLabels(Map<String, String> labels) {
+    StringBuilder builder = new StringBuilder("{");
+    boolean first = true;
+    for (var label : labels.entrySet()) {
+      if (!first) {
+        builder.append(", ");
+      }
+      first = false;
+      builder.append(label.getKey()).append("=\"");
+      String value = label.getValue();
+      for (int i = 0; i < value.length(); i++) {
+        char c = value.charAt(i);
+        switch (c) {
+          case '\\' -> builder.append("\\\\");
+          case '"' -> builder.append("\\\"");
+          case '\n' -> builder.append("\\n");
+          default -> builder.append(c);
+        }
+      }
+      builder.append('"');
+    }
+    return builder.append('}').toString();
+  }
+
+  private static int streamSize(String labels, List<LogEntry> entries) {
+    int size = CodedOutputStream.computeStringSize(1, labels);
+    for (LogEntry entry : entries) {
+      long seconds = Math.floorDiv(entry.ts(), NANOS_PER_SECOND);
+      int nanos = (int) Math.floorMod(entry.ts(), NANOS_PER_SECOND);
+      size += lengthDelimitedSize(2, entrySize(seconds, nanos, entry));
+    }
+    return size;
+  }
+
+  private static int entrySize(long seconds, int nanos, LogEntry entry) {
+    int size =
+        lengthDelimitedSize(1, timestampSize(seconds, nanos))
+            + CodedOutputStream.computeStringSize(2, entry.getLine());
+    for (var pair : entry.getStructuredMetadata().entrySet()) {
+      size += lengthDelimitedSize(3, labelPairSize(pair.getKey(), pair.getValue()));
+    }
+    return size;
+  }
+
+  private static int labelPairSize(String name, String value) {
+    return CodedOutputStream.computeStringSize(1, name)
+        + CodedOutputStream.computeStringSize(2, value);
+  }
+
+  private static int timestampSize(long seconds, int nanos) {
+    int size = 0;
+    if (seconds != 0) {
+      size += CodedOutputStream.computeInt64Size(1, seconds);
+    }
+    if (nanos != 0) {
+      size += CodedOutputStream.computeInt32Size(2, nanos);
+    }
+    return size;
+  }
+
+  private static int lengthDelimitedSize(int fieldNumber, int length) {
+    return CodedOutputStream.computeTagSize(fieldNumber)
+        + CodedOutputStream.computeUInt32SizeNoTag(length)
+        + length;
+  }
+}
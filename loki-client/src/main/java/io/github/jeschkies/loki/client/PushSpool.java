@@ -0,0 +1,314 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.jeschkies.loki.client;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * A durable first-in first-out queue of encoded push requests on disk.
+ *
+ * <p>Records are appended to segment files with a length and CRC32 header and synced to disk. A
+ * segment is rotated once it reaches the maximum segment size. When the spool exceeds its total
+ * size the oldest segments are dropped. The read position is kept in a checkpoint file, so a
+ * spool picks up where it left off after a process restart. A torn record at the end of the last
+ * segment, e.g. after a crash during a write, is truncated when the spool is opened.
+ *
+ * <p>Reading is two-phase: {@link #peek()} returns the oldest record and {@link #commit()} removes
+ * it once it was delivered. Records are thus delivered at least once.
+ */
+public class PushSpool implements Closeable {
+  private static final String SEGMENT_PREFIX = "segment-";
+  private static final String SEGMENT_SUFFIX = ".wal";
+  private static final String CHECKPOINT = "checkpoint";
+  private static final int HEADER_BYTES = 8;
+
+  private final Path directory;
+  private final long maxSegmentBytes;
+  private final long maxTotalBytes;
+  // Segment id to segment size in bytes.
+  private final TreeMap<Long, Long> segments = new TreeMap<>();
+  private long totalBytes = 0;
+  private long droppedBytes = 0;
+
+  private long writeSegment;
+  private FileChannel writeChannel;
+
+  private long readSegment;
+  private long readOffset;
+  private FileChannel readChannel;
+  private int peekedLength = -1;
+
+  /**
+   * Open or create a spool.
+   *
+   * @param directory The directory of the segment files. It is created if it does not exist.
+   * @param maxSegmentBytes Size at which a segment is rotated.
+   * @param maxTotalBytes Size at which the oldest segments are dropped.
+   * @throws IOException when the spool cannot be opened.
+   */
+  public PushSpool(Path directory, long maxSegmentBytes, long maxTotalBytes) throws IOException {
+    this.directory = directory;
+    this.maxSegmentBytes = maxSegmentBytes;
+    this.maxTotalBytes = maxTotalBytes;
+
+    Files.createDirectories(directory);
+    try (DirectoryStream<Path> files =
+        Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+      for (Path file : files) {
+        String name = file.getFileName().toString();
+        long id =
+            Long.parseLong(
+                name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        segments.put(id, Files.size(file));
+      }
+    }
+    if (segments.isEmpty()) {
+      segments.put(0L, 0L);
+    }
+
+    writeSegment = segments.lastKey();
+    writeChannel =
+        FileChannel.open(
+            segmentPath(writeSegment),
+            StandardOpenOption.CREATE,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+    long validBytes = validLength(writeChannel, segments.get(writeSegment));
+    writeChannel.truncate(validBytes);
+    writeChannel.position(validBytes);
+    segments.put(writeSegment, validBytes);
+    totalBytes = segments.values().stream().mapToLong(Long::longValue).sum();
+
+    readCheckpoint();
+    while (segments.firstKey() < readSegment) {
+      deleteSegment(segments.firstKey());
+    }
+  }
+
+  /**
+   * Append a record.
+   *
+   * @param record The encoded push request.
+   * @throws IOException when the record cannot be written.
+   */
+  public synchronized void append(byte[] record) throws IOException {
+    final int size = HEADER_BYTES + record.length;
+    if (segments.get(writeSegment) > 0 && segments.get(writeSegment) + size > maxSegmentBytes) {
+      rotate();
+    }
+
+    CRC32 crc = new CRC32();
+    crc.update(record);
+    ByteBuffer buffer = ByteBuffer.allocate(size);
+    buffer.putInt(record.length).putInt((int) crc.getValue()).put(record).flip();
+    while (buffer.hasRemaining()) {
+      writeChannel.write(buffer);
+    }
+    writeChannel.force(false);
+    segments.merge(writeSegment, (long) size, Long::sum);
+    totalBytes += size;
+
+    while (totalBytes > maxTotalBytes && segments.size() > 1) {
+      long oldest = segments.firstKey();
+      droppedBytes += segments.get(oldest);
+      if (oldest == readSegment) {
+        droppedBytes -= readOffset;
+        advanceReadSegment();
+      } else {
+        deleteSegment(oldest);
+      }
+    }
+  }
+
+  /**
+   * Returns the oldest record without removing it.
+   *
+   * @return the record or null if the spool is empty.
+   * @throws IOException when the record cannot be read.
+   */
+  public synchronized byte[] peek() throws IOException {
+    while (true) {
+      long size = segments.get(readSegment);
+      if (readOffset + HEADER_BYTES <= size) {
+        if (readChannel == null) {
+          readChannel = FileChannel.open(segmentPath(readSegment), StandardOpenOption.READ);
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        readFully(readChannel, header, readOffset);
+        int length = header.getInt(0);
+        int checksum = header.getInt(4);
+        if (length >= 0 && readOffset + HEADER_BYTES + length <= size) {
+          ByteBuffer record = ByteBuffer.allocate(length);
+          readFully(readChannel, record, readOffset + HEADER_BYTES);
+          CRC32 crc = new CRC32();
+          crc.update(record.array());
+          if ((int) crc.getValue() == checksum) {
+            peekedLength = length;
+            return record.array();
+          }
+        }
+        // The rest of the segment is corrupt.
+        droppedBytes += size - readOffset;
+        totalBytes -= size - readOffset;
+        segments.put(readSegment, readOffset);
+      }
+      if (readSegment == writeSegment) {
+        return null;
+      }
+      advanceReadSegment();
+    }
+  }
+
+  /**
+   * Remove the record returned by the last {@link #peek()}.
+   *
+   * @throws IOException when the checkpoint cannot be written.
+   * @throws IllegalStateException when no record was peeked.
+   */
+  public synchronized void commit() throws IOException {
+    if (peekedLength < 0) {
+      throw new IllegalStateException("No record was peeked");
+    }
+    readOffset += HEADER_BYTES + peekedLength;
+    peekedLength = -1;
+    writeCheckpoint();
+  }
+
+  /** Returns true if there are no records to read. */
+  public synchronized boolean isEmpty() {
+    return readSegment == writeSegment && readOffset >= segments.get(writeSegment);
+  }
+
+  /** Returns the size of all segments on disk. */
+  public synchronized long getSizeBytes() {
+    return totalBytes;
+  }
+
+  /** Returns the number of bytes dropped because the spool was full or corrupt. */
+  public synchronized long getDroppedBytes() {
+    return droppedBytes;
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    writeChannel.close();
+    if (readChannel != null) {
+      readChannel.close();
+    }
+  }
+
+  private void rotate() throws IOException {
+    writeChannel.close();
+    writeSegment++;
+    writeChannel =
+        FileChannel.open(
+            segmentPath(writeSegment), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    segments.put(writeSegment, 0L);
+  }
+
+  private void advanceReadSegment() throws IOException {
+    if (readChannel != null) {
+      readChannel.close();
+      readChannel = null;
+    }
+    peekedLength = -1;
+    long consumed = readSegment;
+    readSegment = segments.higherKey(consumed);
+    readOffset = 0;
+    writeCheckpoint();
+    deleteSegment(consumed);
+  }
+
+  private void deleteSegment(long id) throws IOException {
+    totalBytes -= segments.remove(id);
+    Files.deleteIfExists(segmentPath(id));
+  }
+
+  private void readCheckpoint() throws IOException {
+    readSegment = segments.firstKey();
+    readOffset = 0;
+    Path checkpoint = directory.resolve(CHECKPOINT);
+    if (Files.exists(checkpoint)) {
+      ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(checkpoint));
+      if (buffer.remaining() == 16) {
+        long segment = buffer.getLong();
+        long offset = buffer.getLong();
+        // A missing segment was fully read and deleted before the checkpoint was updated.
+        if (segments.containsKey(segment) && offset <= segments.get(segment)) {
+          readSegment = segment;
+          readOffset = offset;
+        }
+      }
+    }
+  }
+
+  private void writeCheckpoint() throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(16).putLong(readSegment).putLong(readOffset);
+    Path temporary = directory.resolve(CHECKPOINT + ".tmp");
+    Files.write(temporary, buffer.array());
+    Files.move(
+        temporary,
+        directory.resolve(CHECKPOINT),
+        StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  private Path segmentPath(long id) {
+    return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+  }
+
+  /** Returns the length of the valid records at the start of a segment. */
+  private static long validLength(FileChannel channel, long size) throws IOException {
+    long offset = 0;
+    ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+    while (offset + HEADER_BYTES <= size) {
+      header.clear();
+      readFully(channel, header, offset);
+      int length = header.getInt(0);
+      if (length < 0 || offset + HEADER_BYTES + length > size) {
+        break;
+      }
+      ByteBuffer record = ByteBuffer.allocate(length);
+      readFully(channel, record, offset + HEADER_BYTES);
+      CRC32 crc = new CRC32();
+      crc.update(record.array());
+      if ((int) crc.getValue() != header.getInt(4)) {
+        break;
+      }
+      offset += HEADER_BYTES + length;
+    }
+    return offset;
+  }
+
+  private static void readFully(FileChannel channel, ByteBuffer buffer, long position)
+      throws IOException {
+    while (buffer.hasRemaining()) {
+      int read = channel.read(buffer, position + buffer.position());
+      if (read < 0) {
+        throw new EOFException("Unexpected end of spool segment");
+      }
+    }
+  }
+}
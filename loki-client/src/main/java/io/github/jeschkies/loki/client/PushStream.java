@@ -0,0 +1,35 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.jeschkies.loki.client;
+
+import io.github.jeschkies.loki.client.model.LogEntry;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The log entries of one stream in a push request.
+ *
+ * @param labels The stream labels.
+ * @param entries The log entries. They do not need to be sorted by timestamp.
+ */
+public record PushStream(Map<String, String> labels, List<LogEntry> entries) {
+  public PushStream {
+    if (labels == null || labels.isEmpty()) {
+      throw new IllegalArgumentException("A stream needs at least one label");
+    }
+    if (entries == null) {
+      entries = List.of();
+    }
+  }
+}
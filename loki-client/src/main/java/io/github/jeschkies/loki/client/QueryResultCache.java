@@ -0,0 +1,228 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.jeschkies.loki.client;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.github.jeschkies.loki.client.model.Data;
+import io.github.jeschkies.loki.client.model.Matrix;
+import io.github.jeschkies.loki.client.model.QueryResult;
+import io.github.jeschkies.loki.client.model.ResultMerger;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A client-side cache for metric range queries.
+ *
+ * <p>Results are cached per normalized query and step as extents of step-aligned sample times. A
+ * query that overlaps cached extents only fetches the missing head and tail from Loki and merges
+ * them with the cached samples. Samples newer than the freshness horizon are never cached since
+ * Loki may still ingest data for them.
+ *
+ * <p>Start and end of a query are aligned to the step like Loki's query frontend does, so that the
+ * samples of different requests line up. Log queries are not cached and passed through.
+ */
+public class QueryResultCache {
+  private record Key(String query, long step) {}
+
+  /** The samples of all series from {@code from} to {@code to} seconds, both inclusive. */
+  private record Extent(long from, long to, Matrix matrix) {}
+
+  private final LokiClient client;
+  private final Duration freshness;
+  private final Cache<Key, List<Extent>> cache;
+
+  /**
+   * Create a cache.
+   *
+   * @param client The client that fetches missing extents.
+   * @param maximumBytes Approximate maximum memory used by cached samples. The least recently used
+   *     queries are evicted first.
+   * @param freshness Samples younger than this are not cached.
+   */
+  public QueryResultCache(LokiClient client, long maximumBytes, Duration freshness) {
+    this.client = client;
+    this.freshness = freshness;
+    this.cache =
+        CacheBuilder.newBuilder()
+            .maximumWeight(maximumBytes)
+            .weigher(QueryResultCache::weigh)
+            .build();
+  }
+
+  /**
+   * Perform a metric range query and answer it from the cache where possible.
+   *
+   * @param lokiQuery The LogQL metric query string.
+   * @param start Start of the query time range. It is rounded up to a multiple of the step.
+   * @param end End of the query time range. It is rounded down to a multiple of the step.
+   * @param step Query resolution step width in whole seconds.
+   * @return the query response if successful.
+   * @throws LokiClientException when a HTTP response is not successful.
+   */
+  public QueryResult rangeQuery(String lokiQuery, Instant start, Instant end, Duration step)
+      throws LokiClientException {
+    if (step.getSeconds() <= 0 || step.getNano() != 0) {
+      throw new IllegalArgumentException("The step must be a positive number of seconds: " + step);
+    }
+    final long stepSeconds = step.getSeconds();
+    final Key key = new Key(LogQL.normalize(lokiQuery), stepSeconds);
+    final long from =
+        Math.ceilDiv(start.getEpochSecond() + (start.getNano() > 0 ? 1 : 0), stepSeconds)
+            * stepSeconds;
+    final long to = Math.floorDiv(end.getEpochSecond(), stepSeconds) * stepSeconds;
+    final long horizon =
+        Math.floorDiv(Instant.now().minus(freshness).getEpochSecond(), stepSeconds) * stepSeconds;
+    if (from > to) {
+      return client.rangeQuery(lokiQuery, start, end, step);
+    }
+
+    List<Matrix> parts = new ArrayList<>();
+    long cursor = from;
+    List<Extent> extents = cache.getIfPresent(key);
+    for (Extent extent : extents != null ? extents : List.<Extent>of()) {
+      if (extent.to() < cursor) {
+        continue;
+      }
+      if (extent.from() > to) {
+        break;
+      }
+      if (extent.from() > cursor) {
+        QueryResult fetched = fetch(lokiQuery, key, cursor, extent.from() - stepSeconds, horizon);
+        if (!(fetched.getData().getResult() instanceof Matrix matrix)) {
+          return fetched;
+        }
+        parts.add(matrix);
+      }
+      parts.add(slice(extent.matrix(), cursor, Math.min(to, extent.to())));
+      cursor = extent.to() + stepSeconds;
+    }
+    if (cursor <= to) {
+      QueryResult fetched = fetch(lokiQuery, key, cursor, to, horizon);
+      if (!(fetched.getData().getResult() instanceof Matrix matrix)) {
+        return fetched;
+      }
+      parts.add(matrix);
+    }
+
+    Data data = new Data();
+    data.setResultType(Data.ResultType.Matrix);
+    data.setResult(parts.size() == 1 ? parts.getFirst() : ResultMerger.mergeMatrices(parts));
+    QueryResult result = new QueryResult();
+    result.setStatus("success");
+    result.setData(data);
+    return result;
+  }
+
+  /** Discard all cached extents. */
+  public void invalidateAll() {
+    cache.invalidateAll();
+  }
+
+  /**
+   * Fetch the samples from {@code from} to {@code to} and cache the part before the horizon. The
+   * original query is sent since the normalized query of the key is only used for lookups.
+   */
+  private QueryResult fetch(String lokiQuery, Key key, long from, long to, long horizon)
+      throws LokiClientException {
+    QueryResult fetched =
+        client.rangeQuery(
+            lokiQuery,
+            Instant.ofEpochSecond(from),
+            Instant.ofEpochSecond(to),
+            Duration.ofSeconds(key.step()));
+    long last = Math.min(to, horizon);
+    if (fetched.getData().getResult() instanceof Matrix matrix && from <= last) {
+      Extent extent = new Extent(from, last, last == to ? matrix : slice(matrix, from, last));
+      cache.asMap().merge(key, List.of(extent), (cached, added) -> insert(cached, added, key));
+    }
+    return fetched;
+  }
+
+  /** Insert new extents and coalesce all extents that overlap or are adjacent. */
+  private static List<Extent> insert(List<Extent> cached, List<Extent> added, Key key) {
+    List<Extent> all = new ArrayList<>(cached.size() + added.size());
+    all.addAll(cached);
+    all.addAll(added);
+    all.sort((a, b) -> Long.compare(a.from(), b.from()));
+
+    List<Extent> coalesced = new ArrayList<>(all.size());
+    for (Extent extent : all) {
+      if (!coalesced.isEmpty() && extent.from() <= coalesced.getLast().to() + key.step()) {
+        Extent previous = coalesced.removeLast();
+        coalesced.add(
+            new Extent(
+                previous.from(),
+                Math.max(previous.to(), extent.to()),
+                ResultMerger.mergeMatrices(List.of(previous.matrix(), extent.matrix()))));
+      } else {
+        coalesced.add(extent);
+      }
+    }
+    return List.copyOf(coalesced);
+  }
+
+  /** Returns the samples from {@code from} to {@code to} seconds, both inclusive. */
+  private static Matrix slice(Matrix matrix, long from, long to) {
+    List<Matrix.Metric> metrics = new ArrayList<>(matrix.getMetrics().size());
+    for (Matrix.Metric metric : matrix.getMetrics()) {
+      int first = lowerBound(metric.timestamps(), from);
+      int last = lowerBound(metric.timestamps(), to + 1);
+      if (first == 0 && last == metric.size()) {
+        metrics.add(metric);
+      } else if (first < last) {
+        metrics.add(
+            new Matrix.Metric(
+                metric.labels(),
+                Arrays.copyOfRange(metric.timestamps(), first, last),
+                Arrays.copyOfRange(metric.samples(), first, last)));
+      }
+    }
+    Matrix sliced = new Matrix();
+    sliced.setMetrics(metrics);
+    return sliced;
+  }
+
+  /** Returns the index of the first timestamp that is not less than {@code ts}. */
+  private static int lowerBound(long[] timestamps, long ts) {
+    int low = 0;
+    int high = timestamps.length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (timestamps[mid] < ts) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Estimate the memory used by the cached samples of a query. Labels are interned and shared with
+   * other results, so they are not counted.
+   */
+  private static int weigh(Key key, List<Extent> extents) {
+    long bytes = 2L * key.query().length();
+    for (Extent extent : extents) {
+      for (Matrix.Metric metric : extent.matrix().getMetrics()) {
+        bytes += 64 + 16L * metric.size();
+      }
+    }
+    return (int) Math.min(bytes, Integer.MAX_VALUE);
+  }
+}
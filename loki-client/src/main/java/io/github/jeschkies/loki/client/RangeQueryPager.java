@@ -0,0 +1,186 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.jeschkies.loki.client;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.github.jeschkies.loki.client.model.LogEntry;
+import io.github.jeschkies.loki.client.model.QueryResult;
+import io.github.jeschkies.loki.client.model.Streams;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Iterates over all log entries of a range query in pages.
+ *
+ * <p>Each page is a forward range query starting at the timestamp of the last entry of the
+ * previous page. Entries on that boundary nanosecond that were already returned are removed from
+ * the next page. If a full page contains nothing but already returned boundary entries, the
+ * cursor moves one nanosecond ahead, since Loki cannot return more entries of that nanosecond.
+ *
+ * <p>The next page is requested as soon as the current page arrived, so it is fetched while the
+ * caller processes the current page. Failed requests surface as {@link
+ * UncheckedLokiClientException}.
+ */
+public class RangeQueryPager implements Iterator<Streams> {
+  static final ExecutorService prefetcher =
+      Executors.newCachedThreadPool(
+          new ThreadFactoryBuilder().setDaemon(true).setNameFormat("loki-pager-%d").build());
+
+  private record BoundaryEntry(Map<String, String> labels, String line) {}
+
+  private final LokiClient client;
+  private final String lokiQuery;
+  private final Instant end;
+  private final long endNanos;
+  private final int pageLimit;
+  private final Executor executor;
+
+  private long cursor;
+  private long boundaryTs = Long.MIN_VALUE;
+  private final Set<BoundaryEntry> boundaryEntries = new HashSet<>();
+  private CompletableFuture<QueryResult> pending;
+  private Streams ready;
+
+  RangeQueryPager(
+      LokiClient client,
+      String lokiQuery,
+      Instant start,
+      Instant end,
+      int pageLimit,
+      Executor executor) {
+    if (pageLimit <= 0) {
+      throw new IllegalArgumentException("Page limit must be positive");
+    }
+    this.client = client;
+    this.lokiQuery = lokiQuery;
+    this.end = end;
+    this.endNanos = Time.nanosFromInstant(end);
+    this.pageLimit = pageLimit;
+    this.executor = executor;
+    this.cursor = Time.nanosFromInstant(start);
+    if (cursor < endNanos) {
+      this.pending = fetch(cursor);
+    }
+  }
+
+  @Override
+  public boolean hasNext() {
+    while (ready == null && pending != null) {
+      QueryResult result;
+      try {
+        result = pending.join();
+      } catch (CompletionException e) {
+        pending = null;
+        if (e.getCause() instanceof UncheckedLokiClientException cause) {
+          throw cause;
+        }
+        throw e;
+      }
+      pending = null;
+      Streams page = nextPage(result);
+      if (!page.getStreams().isEmpty()) {
+        ready = page;
+      }
+    }
+    return ready != null;
+  }
+
+  @Override
+  public Streams next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    Streams page = ready;
+    ready = null;
+    return page;
+  }
+
+  /** Removes already returned entries, moves the cursor and requests the next page. */
+  private Streams nextPage(QueryResult result) {
+    if (!(result.getData().getResult() instanceof Streams streams)) {
+      throw new UncheckedLokiClientException(
+          new LokiClientException("Only log queries can be paged but got a metric query"));
+    }
+
+    int count = 0;
+    int newEntries = 0;
+    long lastTs = cursor;
+    List<Streams.Stream> filtered = new ArrayList<>();
+    for (Streams.Stream stream : streams.getStreams()) {
+      List<LogEntry> values = new ArrayList<>();
+      for (LogEntry entry : stream.values()) {
+        count++;
+        lastTs = Math.max(lastTs, entry.ts());
+        if (entry.ts() != boundaryTs
+            || !boundaryEntries.contains(new BoundaryEntry(stream.labels(), entry.getLine()))) {
+          values.add(entry);
+        }
+      }
+      if (!values.isEmpty()) {
+        newEntries += values.size();
+        filtered.add(new Streams.Stream(stream.labels(), values));
+      }
+    }
+
+    if (lastTs != boundaryTs) {
+      boundaryEntries.clear();
+      boundaryTs = lastTs;
+    }
+    for (Streams.Stream stream : streams.getStreams()) {
+      for (LogEntry entry : stream.values()) {
+        if (entry.ts() == lastTs) {
+          boundaryEntries.add(new BoundaryEntry(stream.labels(), entry.getLine()));
+        }
+      }
+    }
+
+    if (count >= pageLimit) {
+      long nextCursor = lastTs;
+      if (nextCursor == cursor && newEntries == 0) {
+        nextCursor++;
+      }
+      if (nextCursor < endNanos) {
+        cursor = nextCursor;
+        pending = fetch(cursor);
+      }
+    }
+
+    Streams page = new Streams();
+    page.setStreams(filtered);
+    return page;
+  }
+
+  private CompletableFuture<QueryResult> fetch(long from) {
+    return CompletableFuture.supplyAsync(
+        () -> {
+          try {
+            return client.rangeQuery(lokiQuery, Time.instantFromNanos(from), end, pageLimit);
+          } catch (LokiClientException e) {
+            throw new UncheckedLokiClientException(e);
+          }
+        },
+        executor);
+  }
+}
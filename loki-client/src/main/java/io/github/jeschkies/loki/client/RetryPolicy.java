@@ -0,0 +1,62 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.jeschkies.loki.client;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Decides whether and when a failed request is sent again.
+ *
+ * <p>The client only asks the policy about requests that got no response and about error
+ * responses. A response that cannot be read or parsed fails right away.
+ */
+@FunctionalInterface
+public interface RetryPolicy {
+  /**
+   * Returns the delay before the next attempt.
+   *
+   * @param attempt The number of failed attempts so far, starting at 1.
+   * @param failure The failure of the last attempt.
+   * @return the delay or empty to give up and throw the failure.
+   */
+  Optional<Duration> nextDelay(int attempt, Exception failure);
+
+  /** Returns a policy that never retries. */
+  static RetryPolicy none() {
+    return (attempt, failure) -> Optional.empty();
+  }
+
+  /**
+   * Returns true for failures that may succeed when retried: I/O errors such as connection resets,
+   * 429 and 5xx responses. Other 4xx responses, e.g. out of order or too old entries, are final.
+   *
+   * @param failure The failure of a request.
+   * @return whether the request may be retried.
+   */
+  static boolean isRetryable(Exception failure) {
+    if (failure instanceof IOException) {
+      return true;
+    }
+    if (failure instanceof LokiClientException e) {
+      int status = e.getStatusCode();
+      if (status == -1) {
+        return e.getCause() instanceof IOException;
+      }
+      return status == 429 || status >= 500;
+    }
+    return false;
+  }
+}
@@ -0,0 +1,134 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.jeschkies.loki.client;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent calls with the same key into one call.
+ *
+ * <p>The first caller of a key executes the call. Callers that arrive while it is in flight wait
+ * for it and receive the same result or failure. Once the call completed the key is forgotten, so
+ * results are never served after the fact like from a cache.
+ *
+ * @param <K> The key of a call, e.g. the request URI.
+ * @param <V> The result of a call.
+ */
+final class SingleFlight<K, V> {
+  /** A blocking call. */
+  @FunctionalInterface
+  interface Call<V> {
+    V call() throws IOException, LokiClientException;
+  }
+
+  private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+  /**
+   * Execute the call or wait for the identical call in flight.
+   *
+   * @param key The key of the call.
+   * @param call Executes the call on the calling thread if no identical call is in flight.
+   * @return the result of the call.
+   * @throws IOException when this thread executed the call and it failed to read the response.
+   * @throws LokiClientException when the call was not successful.
+   */
+  V execute(K key, Call<V> call) throws IOException, LokiClientException {
+    CompletableFuture<V> created = new CompletableFuture<>();
+    CompletableFuture<V> existing = inFlight.putIfAbsent(key, created);
+    if (existing != null) {
+      return await(existing);
+    }
+    try {
+      V result = call.call();
+      created.complete(result);
+      return result;
+    } catch (IOException e) {
+      created.completeExceptionally(new LokiClientException("Error sending request", e));
+      throw e;
+    } catch (Throwable e) {
+      created.completeExceptionally(e);
+      throw e;
+    } finally {
+      inFlight.remove(key, created);
+    }
+  }
+
+  /**
+   * Start the call or join the identical call in flight without blocking.
+   *
+   * <p>Every caller gets its own future. Cancelling it detaches the caller but does not cancel the
+   * shared call.
+   *
+   * @param key The key of the call.
+   * @param call Starts the call if no identical call is in flight.
+   * @return the result of the call.
+   */
+  CompletableFuture<V> executeAsync(K key, Supplier<CompletableFuture<V>> call) {
+    CompletableFuture<V> created = new CompletableFuture<>();
+    CompletableFuture<V> existing = inFlight.putIfAbsent(key, created);
+    if (existing != null) {
+      return existing.copy();
+    }
+    try {
+      call.get()
+          .whenComplete(
+              (result, error) -> {
+                inFlight.remove(key, created);
+                if (error != null) {
+                  created.completeExceptionally(error);
+                } else {
+                  created.complete(result);
+                }
+              });
+    } catch (RuntimeException e) {
+      inFlight.remove(key, created);
+      created.completeExceptionally(e);
+    }
+    return created.copy();
+  }
+
+  /** Returns the number of calls in flight. */
+  int size() {
+    return inFlight.size();
+  }
+
+  private static <V> V await(CompletableFuture<V> future) throws LokiClientException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new LokiClientException("Interrupted while waiting for an identical request", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof CompletionException && cause.getCause() != null) {
+        cause = cause.getCause();
+      }
+      if (cause instanceof LokiClientException failure) {
+        throw failure;
+      }
+      if (cause instanceof RuntimeException failure) {
+        throw failure;
+      }
+      if (cause instanceof Error failure) {
+        throw failure;
+      }
+      throw new LokiClientException("Error executing identical request", cause);
+    }
+  }
+}
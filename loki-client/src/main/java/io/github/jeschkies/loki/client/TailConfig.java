@@ -0,0 +1,46 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.jeschkies.loki.client;
+
+import java.time.Duration;
+
+/**
+ * Configuration of a {@link LiveTail}.
+ *
+ * @param queueCapacity Maximum number of entries waiting to be delivered to the listener.
+ * @param overflowPolicy What happens to new entries when the queue is full. {@code Block} stops
+ *     reading from the WebSocket, so Loki drops and reports entries instead.
+ * @param delayFor How long Loki delays sending entries, which lets late entries arrive in order.
+ * @param reconnectPolicy Decides whether and when a lost connection is opened again.
+ */
+public record TailConfig(
+    int queueCapacity,
+    BatchingPusher.OverflowPolicy overflowPolicy,
+    Duration delayFor,
+    RetryPolicy reconnectPolicy) {
+  public TailConfig {
+    if (queueCapacity <= 0) {
+      queueCapacity = 1000;
+    }
+    if (overflowPolicy == null) {
+      overflowPolicy = BatchingPusher.OverflowPolicy.Block;
+    }
+    if (delayFor == null) {
+      delayFor = Duration.ZERO;
+    }
+    if (reconnectPolicy == null) {
+      reconnectPolicy = new ExponentialBackoffRetryPolicy(null, null, 0);
+    }
+  }
+}
@@ -0,0 +1,49 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.jeschkies.loki.client;
+
+import java.io.IOException;
+import java.util.Objects;
+import okhttp3.Interceptor;
+import okhttp3.Response;
+
+/**
+ * Sets the {@code X-Scope-OrgID} header of a tenant.
+ *
+ * <p>It is an application interceptor, so the header is also set on retries, redirects and the
+ * WebSocket handshake of a tail. The tenant's concurrency limit is enforced by {@link LokiClient}
+ * before a call is enqueued, since waiting in an interceptor would block a dispatcher thread.
+ */
+final class TenantInterceptor implements Interceptor {
+  static final String TENANT_HEADER = "X-Scope-OrgID";
+
+  private final String tenantId;
+
+  /**
+   * Create an interceptor for a tenant.
+   *
+   * @param tenantId The tenant ID.
+   */
+  TenantInterceptor(String tenantId) {
+    this.tenantId = Objects.requireNonNull(tenantId, "tenantId");
+    if (tenantId.isEmpty()) {
+      throw new IllegalArgumentException("Tenant ID must not be empty");
+    }
+  }
+
+  @Override
+  public Response intercept(Chain chain) throws IOException {
+    return chain.proceed(chain.request().newBuilder().header(TENANT_HEADER, tenantId).build());
+  }
+}
@@ -29,4 +29,8 @@ public final class Time {
   public static Long nanosFromInstant(Instant i) {
     return i.getEpochSecond() * 1000000000L + i.getNano(); // as nanoseconds
   }
+
+  public static Instant instantFromNanos(long nanos) {
+    return Instant.ofEpochSecond(0, nanos);
+  }
 }
@@ -24,7 +24,11 @@ public class Data {
     @JsonProperty("streams")
     Streams,
     @JsonProperty("matrix")
-    Matrix;
+    Matrix,
+    @JsonProperty("vector")
+    Vector,
+    @JsonProperty("scalar")
+    Scalar;
   }
 
   public ResultType getResultType() {
@@ -44,7 +48,9 @@ public class Data {
   @JsonSubTypes(
       value = {
         @JsonSubTypes.Type(value = Streams.class, name = "streams"),
-        @JsonSubTypes.Type(value = Matrix.class, name = "matrix")
+        @JsonSubTypes.Type(value = Matrix.class, name = "matrix"),
+        @JsonSubTypes.Type(value = Vector.class, name = "vector"),
+        @JsonSubTypes.Type(value = Scalar.class, name = "scalar")
       })
   private QueryResult.Result result;
 
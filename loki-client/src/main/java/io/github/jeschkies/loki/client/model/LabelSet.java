@@ -0,0 +1,146 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.jeschkies.loki.client.model;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * An immutable label set sorted by label name with a precomputed hash code.
+ *
+ * <p>Label sets are usually obtained from a {@link LabelSetInterner} so that equal label sets are
+ * the same instance and comparing them is a pointer comparison.
+ */
+public final class LabelSet extends AbstractMap<String, String> {
+  private final String[] names;
+  private final String[] values;
+  private final int hash;
+
+  private LabelSet(String[] names, String[] values) {
+    this.names = names;
+    this.values = values;
+    int h = 0;
+    for (int i = 0; i < names.length; i++) {
+      // Same as the hash code of a Map.Entry, so LabelSet stays equal to other maps.
+      h += names[i].hashCode() ^ values[i].hashCode();
+    }
+    this.hash = h;
+  }
+
+  /**
+   * Create a label set from a map.
+   *
+   * @param labels The labels.
+   * @return the sorted label set.
+   */
+  public static LabelSet of(Map<String, String> labels) {
+    if (labels instanceof LabelSet labelSet) {
+      return labelSet;
+    }
+    @SuppressWarnings("unchecked")
+    Map.Entry<String, String>[] entries = labels.entrySet().toArray(new Map.Entry[0]);
+    Arrays.sort(entries, Map.Entry.comparingByKey());
+    String[] names = new String[entries.length];
+    String[] values = new String[entries.length];
+    for (int i = 0; i < entries.length; i++) {
+      names[i] = entries[i].getKey();
+      values[i] = entries[i].getValue();
+    }
+    return new LabelSet(names, values);
+  }
+
+  @Override
+  public int size() {
+    return names.length;
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return key instanceof String name && Arrays.binarySearch(names, name) >= 0;
+  }
+
+  @Override
+  public String get(Object key) {
+    if (!(key instanceof String name)) {
+      return null;
+    }
+    int index = Arrays.binarySearch(names, name);
+    return index >= 0 ? values[index] : null;
+  }
+
+  @Override
+  public Set<Entry<String, String>> entrySet() {
+    return new AbstractSet<>() {
+      @Override
+      public Iterator<Entry<String, String>> iterator() {
+        return new Iterator<>() {
+          private int index = 0;
+
+          @Override
+          public boolean hasNext() {
+            return index < names.length;
+          }
+
+          @Override
+          public Entry<String, String> next() {
+            if (index >= names.length) {
+              throw new NoSuchElementException();
+            }
+            Entry<String, String> entry = new SimpleImmutableEntry<>(names[index], values[index]);
+            index++;
+            return entry;
+          }
+        };
+      }
+
+      @Override
+      public int size() {
+        return names.length;
+      }
+    };
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o instanceof LabelSet other) {
+      return hash == other.hash
+          && Arrays.equals(names, other.names)
+          && Arrays.equals(values, other.values);
+    }
+    return super.equals(o);
+  }
+
+  @Override
+  public int hashCode() {
+    return hash;
+  }
+
+  /** Returns the label name at the given position in name order. */
+  public String name(int index) {
+    return names[index];
+  }
+
+  /** Returns the label value at the given position in name order. */
+  public String value(int index) {
+    return values[index];
+  }
+}
@@ -0,0 +1,67 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.jeschkies.loki.client.model;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.util.Map;
+
+/**
+ * A bounded cache of canonical {@link LabelSet} instances.
+ *
+ * <p>The query result deserializers and the push path share {@link #shared()}, so a stream that
+ * shows up in many responses or pushes is stored only once.
+ */
+public class LabelSetInterner {
+  private static final LabelSetInterner sharedInstance = new LabelSetInterner(10000);
+
+  private final Cache<LabelSet, LabelSet> cache;
+
+  /**
+   * Create an interner.
+   *
+   * @param maximumSize Maximum number of label sets to keep.
+   */
+  public LabelSetInterner(long maximumSize) {
+    this.cache = CacheBuilder.newBuilder().maximumSize(maximumSize).build();
+  }
+
+  /** Returns the interner used by the client. */
+  public static LabelSetInterner shared() {
+    return sharedInstance;
+  }
+
+  /**
+   * Returns the canonical label set equal to the given labels.
+   *
+   * @param labels The labels.
+   * @return the interned label set.
+   */
+  public LabelSet intern(Map<String, String> labels) {
+    // A label set has the hash code of an equal map and equals it, so the map itself finds the
+    // cached label set. Only a miss sorts the labels into a new label set.
+    LabelSet existing = cache.asMap().get(labels);
+    if (existing != null) {
+      return existing;
+    }
+    LabelSet labelSet = LabelSet.of(labels);
+    existing = cache.asMap().putIfAbsent(labelSet, labelSet);
+    return existing != null ? existing : labelSet;
+  }
+
+  /** Returns the number of cached label sets. */
+  public long size() {
+    return cache.size();
+  }
+}
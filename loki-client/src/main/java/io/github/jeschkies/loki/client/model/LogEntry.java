@@ -14,15 +14,43 @@
 package io.github.jeschkies.loki.client.model;
 
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import java.util.Map;
+import java.util.Objects;
 
 @JsonDeserialize(using = LogEntryDeserializer.class)
 public class LogEntry {
+  public LogEntry() {}
+
+  public LogEntry(long ts, String line) {
+    this.ts = ts;
+    this.line = line;
+  }
+
+  /**
+   * Create an entry with structured metadata, which Loki 3 stores next to the line without
+   * indexing it as stream labels.
+   *
+   * @param ts The timestamp in nanoseconds.
+   * @param line The log line.
+   * @param structuredMetadata The metadata key value pairs.
+   */
+  public LogEntry(long ts, String line, Map<String, String> structuredMetadata) {
+    this.ts = ts;
+    this.line = line;
+    this.structuredMetadata = structuredMetadata != null ? structuredMetadata : Map.of();
+  }
+
   public Long getTs() {
     return ts;
   }
 
+  /** Returns the timestamp in nanoseconds without boxing it. */
+  public long ts() {
+    return ts;
+  }
+
   public void setTs(Long ts) {
-    this.ts = ts;
+    this.ts = Objects.requireNonNull(ts, "ts");
   }
 
   public String getLine() {
@@ -33,6 +61,17 @@ public class LogEntry {
     this.line = line;
   }
 
-  private Long ts;
+  /** Returns the structured metadata of a pushed entry. It is empty for queried entries. */
+  public Map<String, String> getStructuredMetadata() {
+    return structuredMetadata;
+  }
+
+  /** Set the structured metadata to push with the entry. Null is the same as no metadata. */
+  public void setStructuredMetadata(Map<String, String> structuredMetadata) {
+    this.structuredMetadata = structuredMetadata != null ? structuredMetadata : Map.of();
+  }
+
+  private long ts;
   private String line;
+  private Map<String, String> structuredMetadata = Map.of();
 }
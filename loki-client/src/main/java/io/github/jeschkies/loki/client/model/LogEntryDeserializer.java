@@ -14,8 +14,8 @@
 package io.github.jeschkies.loki.client.model;
 
 import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationContext;
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
 import java.io.IOException;
 
@@ -26,10 +26,14 @@ class LogEntryDeserializer extends StdDeserializer<LogEntry> {
 
   @Override
   public LogEntry deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
-    final JsonNode node = p.getCodec().readTree(p);
-    LogEntry entry = new LogEntry();
-    entry.setTs(node.get(0).asLong());
-    entry.setLine(node.get(1).asText());
-    return entry;
+    if (p.currentToken() != JsonToken.START_ARRAY) {
+      return (LogEntry) ctxt.handleUnexpectedToken(LogEntry.class, p);
+    }
+    p.nextToken();
+    final long ts = ValueParsing.readLong(p);
+    p.nextToken();
+    final String line = p.getText();
+    ValueParsing.skipToEndArray(p);
+    return new LogEntry(ts, line);
   }
 }
@@ -13,11 +13,13 @@
  */
 package io.github.jeschkies.loki.client.model;
 
-import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 @JsonDeserialize(using = MatrixDeserializer.class)
 public final class Matrix extends QueryResult.Result {
@@ -35,6 +37,79 @@ public final class Matrix extends QueryResult.Result {
     this.metrics = metrics;
   }
 
-  public record Metric(
-      @JsonProperty("metric") Map<String, String> labels, List<MetricPoint> values) {}
+  /**
+   * A metric series stored as columns. Sample {@code i} is at {@code timestamps()[i]} with value
+   * {@code samples()[i]}.
+   *
+   * <p>The accessors return the backing arrays without copying them. They must not be modified.
+   *
+   * @param labels The series labels.
+   * @param timestamps The sample timestamps in seconds.
+   * @param samples The sample values.
+   */
+  public record Metric(Map<String, String> labels, long[] timestamps, double[] samples) {
+    public Metric {
+      if (timestamps.length != samples.length) {
+        throw new IllegalArgumentException("Timestamps and samples must have the same length");
+      }
+    }
+
+    public Metric(Map<String, String> labels, List<MetricPoint> values) {
+      this(labels, timestamps(values), samples(values));
+    }
+
+    /** Returns the number of samples. */
+    public int size() {
+      return timestamps.length;
+    }
+
+    /** Returns a read-only view of the samples that creates a {@link MetricPoint} per access. */
+    public List<MetricPoint> values() {
+      return new AbstractList<>() {
+        @Override
+        public MetricPoint get(int index) {
+          return new MetricPoint(timestamps[index], samples[index]);
+        }
+
+        @Override
+        public int size() {
+          return timestamps.length;
+        }
+      };
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof Metric other
+          && Objects.equals(labels, other.labels)
+          && Arrays.equals(timestamps, other.timestamps)
+          && Arrays.equals(samples, other.samples);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(labels, Arrays.hashCode(timestamps), Arrays.hashCode(samples));
+    }
+
+    @Override
+    public String toString() {
+      return "Metric[labels=" + labels + ", size=" + timestamps.length + "]";
+    }
+
+    private static long[] timestamps(List<MetricPoint> values) {
+      long[] timestamps = new long[values.size()];
+      for (int i = 0; i < timestamps.length; i++) {
+        timestamps[i] = values.get(i).ts();
+      }
+      return timestamps;
+    }
+
+    private static double[] samples(List<MetricPoint> values) {
+      double[] samples = new double[values.size()];
+      for (int i = 0; i < samples.length; i++) {
+        samples[i] = values.get(i).value();
+      }
+      return samples;
+    }
+  }
 }
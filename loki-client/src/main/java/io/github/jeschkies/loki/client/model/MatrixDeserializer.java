@@ -13,24 +13,71 @@
  */
 package io.github.jeschkies.loki.client.model;
 
+import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.JsonDeserializer;
-import com.google.common.collect.Lists;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 
+/** Decodes metric series straight from the token stream into timestamp and sample columns. */
 public class MatrixDeserializer extends JsonDeserializer<Matrix> {
+  private static final int INITIAL_CAPACITY = 64;
+
   @Override
   public Matrix deserialize(JsonParser jp, DeserializationContext ctxt) throws IOException {
     Matrix matrix = new Matrix();
     if (jp.currentToken() == JsonToken.START_ARRAY) {
-      jp.nextToken();
-      if (jp.currentToken() != JsonToken.END_ARRAY) {
-        matrix.setMetrics(Lists.newArrayList(jp.readValuesAs(Matrix.Metric.class)));
+      List<Matrix.Metric> metrics = new ArrayList<>();
+      while (jp.nextToken() == JsonToken.START_OBJECT) {
+        metrics.add(readMetric(jp));
       }
+      matrix.setMetrics(metrics);
     }
 
     return matrix;
   }
+
+  private static Matrix.Metric readMetric(JsonParser jp) throws IOException {
+    Map<String, String> labels = Map.of();
+    long[] timestamps = new long[0];
+    double[] samples = new double[0];
+    int size = 0;
+    while (jp.nextToken() == JsonToken.FIELD_NAME) {
+      String field = jp.currentName();
+      jp.nextToken();
+      switch (field) {
+        case "metric" -> labels = QueryResultReader.readLabels(jp);
+        case "values" -> {
+          if (jp.currentToken() != JsonToken.START_ARRAY) {
+            throw new JsonParseException(jp, "Expected values array");
+          }
+          timestamps = new long[INITIAL_CAPACITY];
+          samples = new double[INITIAL_CAPACITY];
+          while (jp.nextToken() == JsonToken.START_ARRAY) {
+            if (size == timestamps.length) {
+              timestamps = Arrays.copyOf(timestamps, size * 2);
+              samples = Arrays.copyOf(samples, size * 2);
+            }
+            jp.nextToken();
+            timestamps[size] = ValueParsing.readLong(jp);
+            jp.nextToken();
+            samples[size] = ValueParsing.readDouble(jp);
+            ValueParsing.skipToEndArray(jp);
+            size++;
+          }
+        }
+        default -> jp.skipChildren();
+      }
+    }
+    if (size != timestamps.length) {
+      timestamps = Arrays.copyOf(timestamps, size);
+      samples = Arrays.copyOf(samples, size);
+    }
+    return new Matrix.Metric(labels, timestamps, samples);
+  }
 }
@@ -14,25 +14,43 @@
 package io.github.jeschkies.loki.client.model;
 
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import java.util.Objects;
 
 @JsonDeserialize(using = MetricPointDeserializer.class)
 public class MetricPoint {
+  public MetricPoint() {}
+
+  public MetricPoint(long ts, double v) {
+    this.ts = ts;
+    this.v = v;
+  }
+
   public Long getTs() {
     return ts;
   }
 
+  /** Returns the timestamp in seconds without boxing it. */
+  public long ts() {
+    return ts;
+  }
+
   public void setTs(Long ts) {
-    this.ts = ts;
+    this.ts = Objects.requireNonNull(ts, "ts");
   }
 
   public Double getValue() {
     return v;
   }
 
+  /** Returns the sample value without boxing it. */
+  public double value() {
+    return v;
+  }
+
   public void setValue(Double v) {
-    this.v = v;
+    this.v = Objects.requireNonNull(v, "v");
   }
 
-  private Long ts;
-  private Double v;
+  private long ts;
+  private double v;
 }
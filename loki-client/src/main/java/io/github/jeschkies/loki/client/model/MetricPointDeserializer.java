@@ -14,8 +14,8 @@
 package io.github.jeschkies.loki.client.model;
 
 import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationContext;
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
 import java.io.IOException;
 
@@ -26,10 +26,14 @@ class MetricPointDeserializer extends StdDeserializer<MetricPoint> {
 
   @Override
   public MetricPoint deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
-    final JsonNode node = p.getCodec().readTree(p);
-    MetricPoint point = new MetricPoint();
-    point.setTs(node.get(0).asLong());
-    point.setValue(node.get(1).asDouble());
-    return point;
+    if (p.currentToken() != JsonToken.START_ARRAY) {
+      return (MetricPoint) ctxt.handleUnexpectedToken(MetricPoint.class, p);
+    }
+    p.nextToken();
+    final long ts = ValueParsing.readLong(p);
+    p.nextToken();
+    final double value = ValueParsing.readDouble(p);
+    ValueParsing.skipToEndArray(p);
+    return new MetricPoint(ts, value);
   }
 }
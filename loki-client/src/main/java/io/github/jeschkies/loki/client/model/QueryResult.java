@@ -43,5 +43,5 @@ public class QueryResult {
   private String status;
   private Data data;
 
-  public abstract static sealed class Result permits Streams, Matrix {}
+  public abstract static sealed class Result permits Streams, Matrix, Vector, Scalar {}
 }
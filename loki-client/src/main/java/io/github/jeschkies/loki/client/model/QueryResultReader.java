@@ -0,0 +1,237 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.jeschkies.loki.client.model;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Walks a query response token by token and hands each stream and entry to a {@link
+ * QueryResultVisitor}.
+ *
+ * <p>Unlike {@link QueryResult#fromJSON(InputStream)} only the labels of the current stream are
+ * held in memory, so the memory use does not grow with the size of the response.
+ */
+public final class QueryResultReader {
+  private static final JsonFactory factory = QueryResult.mapper.getFactory();
+
+  private QueryResultReader() {
+    throw new UnsupportedOperationException("This is a utility class and cannot be instantiated");
+  }
+
+  /**
+   * Read a query response.
+   *
+   * @param input The JSON response body.
+   * @param visitor Receives the streams or metric series of the result. The sample of each series
+   *     of a vector is reported as a series with one point.
+   * @return the result type of the response.
+   * @throws IOException when the input cannot be read or is not a valid query response.
+   */
+  public static Data.ResultType read(InputStream input, QueryResultVisitor visitor)
+      throws IOException {
+    try (JsonParser p = factory.createParser(input)) {
+      return read(p, visitor);
+    }
+  }
+
+  /**
+   * Read only the result type of a query response. Parsing stops at the {@code resultType} field,
+   * so the result itself is not read. Vector and scalar results of instant queries are reported as
+   * {@link Data.ResultType#Matrix}, the result type of the same query as range query.
+   *
+   * @param input The JSON response body.
+   * @return the result type of the response.
+   * @throws IOException when the input cannot be read or has no result type.
+   */
+  public static Data.ResultType readResultType(InputStream input) throws IOException {
+    try (JsonParser p = factory.createParser(input)) {
+      expect(p, p.nextToken(), JsonToken.START_OBJECT);
+      while (p.nextToken() == JsonToken.FIELD_NAME) {
+        String field = p.currentName();
+        p.nextToken();
+        if (field.equals("data")) {
+          expect(p, p.currentToken(), JsonToken.START_OBJECT);
+          while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String dataField = p.currentName();
+            p.nextToken();
+            if (dataField.equals("resultType")) {
+              return p.getText().equals("streams")
+                  ? Data.ResultType.Streams
+                  : Data.ResultType.Matrix;
+            }
+            p.skipChildren();
+          }
+        } else {
+          p.skipChildren();
+        }
+      }
+      throw new JsonParseException(p, "Missing result type");
+    }
+  }
+
+  static Data.ResultType read(JsonParser p, QueryResultVisitor visitor) throws IOException {
+    Data.ResultType resultType = null;
+    expect(p, p.nextToken(), JsonToken.START_OBJECT);
+    while (p.nextToken() == JsonToken.FIELD_NAME) {
+      String field = p.currentName();
+      p.nextToken();
+      if (field.equals("data")) {
+        resultType = readData(p, visitor);
+      } else {
+        p.skipChildren();
+      }
+    }
+    return resultType;
+  }
+
+  private static Data.ResultType readData(JsonParser p, QueryResultVisitor visitor)
+      throws IOException {
+    Data.ResultType resultType = null;
+    expect(p, p.currentToken(), JsonToken.START_OBJECT);
+    while (p.nextToken() == JsonToken.FIELD_NAME) {
+      String field = p.currentName();
+      p.nextToken();
+      switch (field) {
+        case "resultType" -> resultType = parseResultType(p, p.getText());
+        case "result" -> {
+          Data.ResultType fromResult = readResult(p, visitor);
+          if (resultType == null) {
+            resultType = fromResult;
+          }
+        }
+        default -> p.skipChildren();
+      }
+    }
+    return resultType;
+  }
+
+  private static Data.ResultType readResult(JsonParser p, QueryResultVisitor visitor)
+      throws IOException {
+    Data.ResultType resultType = null;
+    expect(p, p.currentToken(), JsonToken.START_ARRAY);
+    JsonToken token = p.nextToken();
+    if (token != null && token.isScalarValue()) {
+      // A scalar result is a single [timestamp, value] pair instead of a list of series.
+      Instant time = ValueParsing.readInstant(p);
+      p.nextToken();
+      visitor.scalar(time, ValueParsing.readDouble(p));
+      ValueParsing.skipToEndArray(p);
+      return Data.ResultType.Scalar;
+    }
+    while (token == JsonToken.START_OBJECT) {
+      Data.ResultType elementType = null;
+      while (p.nextToken() == JsonToken.FIELD_NAME) {
+        String field = p.currentName();
+        p.nextToken();
+        switch (field) {
+          case "stream" -> {
+            elementType = Data.ResultType.Streams;
+            visitor.startStream(readLabels(p));
+          }
+          case "metric" -> {
+            elementType = Data.ResultType.Matrix;
+            visitor.startMetric(readLabels(p));
+          }
+          case "values" -> {
+            if (elementType == null) {
+              throw new JsonParseException(p, "Expected stream or metric labels before values");
+            }
+            readValues(p, visitor, elementType);
+          }
+          case "value" -> {
+            if (elementType != Data.ResultType.Matrix) {
+              throw new JsonParseException(p, "Expected metric labels before value");
+            }
+            elementType = Data.ResultType.Vector;
+            readValue(p, visitor);
+          }
+          default -> p.skipChildren();
+        }
+      }
+      if (elementType == Data.ResultType.Streams) {
+        visitor.endStream();
+      } else if (elementType != null) {
+        visitor.endMetric();
+      }
+      resultType = elementType;
+      token = p.nextToken();
+    }
+    expect(p, p.currentToken(), JsonToken.END_ARRAY);
+    return resultType;
+  }
+
+  private static void readValues(
+      JsonParser p, QueryResultVisitor visitor, Data.ResultType elementType) throws IOException {
+    expect(p, p.currentToken(), JsonToken.START_ARRAY);
+    while (p.nextToken() == JsonToken.START_ARRAY) {
+      p.nextToken();
+      long ts = ValueParsing.readLong(p);
+      p.nextToken();
+      if (elementType == Data.ResultType.Streams) {
+        visitor.logEntry(ts, p.getText());
+      } else {
+        visitor.metricPoint(ts, ValueParsing.readDouble(p));
+      }
+      ValueParsing.skipToEndArray(p);
+    }
+  }
+
+  /** Read the single sample of a vector element as a metric point. */
+  private static void readValue(JsonParser p, QueryResultVisitor visitor) throws IOException {
+    expect(p, p.currentToken(), JsonToken.START_ARRAY);
+    p.nextToken();
+    Instant time = ValueParsing.readInstant(p);
+    p.nextToken();
+    visitor.metricPoint(time, ValueParsing.readDouble(p));
+    ValueParsing.skipToEndArray(p);
+  }
+
+  /** Read a label object and return the interned {@link LabelSet}. */
+  static LabelSet readLabels(JsonParser p) throws IOException {
+    expect(p, p.currentToken(), JsonToken.START_OBJECT);
+    Map<String, String> labels = new HashMap<>();
+    while (p.nextToken() == JsonToken.FIELD_NAME) {
+      String name = p.currentName();
+      p.nextToken();
+      labels.put(name, p.getText());
+    }
+    return LabelSetInterner.shared().intern(labels);
+  }
+
+  private static Data.ResultType parseResultType(JsonParser p, String value)
+      throws JsonParseException {
+    return switch (value) {
+      case "streams" -> Data.ResultType.Streams;
+      case "matrix" -> Data.ResultType.Matrix;
+      case "vector" -> Data.ResultType.Vector;
+      case "scalar" -> Data.ResultType.Scalar;
+      default -> throw new JsonParseException(p, "Unsupported result type " + value);
+    };
+  }
+
+  private static void expect(JsonParser p, JsonToken actual, JsonToken expected)
+      throws JsonParseException {
+    if (actual != expected) {
+      throw new JsonParseException(p, "Expected " + expected + " but got " + actual);
+    }
+  }
+}
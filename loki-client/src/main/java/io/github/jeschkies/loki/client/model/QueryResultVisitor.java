@@ -0,0 +1,57 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.jeschkies.loki.client.model;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Receives the parts of a query response one at a time from {@link QueryResultReader}.
+ *
+ * <p>A streams result calls {@link #startStream(Map)}, then {@link #logEntry(long, String)} for
+ * each entry and finally {@link #endStream()} for every stream. A matrix result does the same
+ * with the metric methods. A vector result reports the single sample of each series with {@link
+ * #metricPoint(Instant, double)}, since its evaluation time may have a fraction of a second. All
+ * methods do nothing by default.
+ */
+public interface QueryResultVisitor {
+  /** Called before the entries of a log stream. */
+  default void startStream(Map<String, String> labels) {}
+
+  /** Called for each entry of the current log stream. */
+  default void logEntry(long ts, String line) {}
+
+  /** Called after the last entry of a log stream. */
+  default void endStream() {}
+
+  /** Called before the points of a metric series. */
+  default void startMetric(Map<String, String> labels) {}
+
+  /** Called for each point of the current metric series. */
+  default void metricPoint(long ts, double value) {}
+
+  /**
+   * Called for the sample of the current series of a vector result. By default it calls {@link
+   * #metricPoint(long, double)} with the time in whole seconds.
+   */
+  default void metricPoint(Instant time, double value) {
+    metricPoint(time.getEpochSecond(), value);
+  }
+
+  /** Called after the last point of a metric series. */
+  default void endMetric() {}
+
+  /** Called for the value of a scalar result. */
+  default void scalar(Instant time, double value) {}
+}
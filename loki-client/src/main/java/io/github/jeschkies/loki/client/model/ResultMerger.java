@@ -0,0 +1,247 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.jeschkies.loki.client.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/** Merges the results of queries over adjacent time ranges into one result. */
+public final class ResultMerger {
+  private ResultMerger() {
+    throw new UnsupportedOperationException("This is a utility class and cannot be instantiated");
+  }
+
+  private record Cursor(List<LogEntry> values, int index) {
+    LogEntry current() {
+      return values.get(index);
+    }
+  }
+
+  /**
+   * Merge query results of the same result type.
+   *
+   * @param results The results to merge.
+   * @return one result with the streams or metric series of all results.
+   * @throws IllegalArgumentException when the result types differ.
+   */
+  public static QueryResult merge(List<QueryResult> results) {
+    Data data = new Data();
+    if (results.isEmpty()) {
+      data.setResultType(Data.ResultType.Streams);
+      data.setResult(mergeStreams(List.of()));
+    } else {
+      Data.ResultType resultType = results.getFirst().getData().getResultType();
+      data.setResultType(resultType);
+      if (resultType == Data.ResultType.Streams) {
+        List<Streams> streams = new ArrayList<>();
+        for (QueryResult result : results) {
+          streams.add(cast(result, Streams.class));
+        }
+        data.setResult(mergeStreams(streams));
+      } else {
+        List<Matrix> matrices = new ArrayList<>();
+        for (QueryResult result : results) {
+          matrices.add(cast(result, Matrix.class));
+        }
+        data.setResult(mergeMatrices(matrices));
+      }
+    }
+    QueryResult merged = new QueryResult();
+    merged.setStatus("success");
+    merged.setData(data);
+    return merged;
+  }
+
+  /**
+   * Merge log streams with the same labels. The entries of each stream are merged by timestamp.
+   *
+   * @param results The streams to merge.
+   * @return the merged streams.
+   */
+  public static Streams mergeStreams(List<Streams> results) {
+    Map<Map<String, String>, List<List<LogEntry>>> byLabels = new LinkedHashMap<>();
+    for (Streams result : results) {
+      for (Streams.Stream stream : result.getStreams()) {
+        byLabels.computeIfAbsent(stream.labels(), k -> new ArrayList<>()).add(stream.values());
+      }
+    }
+
+    List<Streams.Stream> streams = new ArrayList<>(byLabels.size());
+    for (var entry : byLabels.entrySet()) {
+      streams.add(new Streams.Stream(entry.getKey(), mergeEntries(entry.getValue())));
+    }
+    Streams merged = new Streams();
+    merged.setStreams(streams);
+    return merged;
+  }
+
+  /**
+   * Merge metric series with the same labels. Points are ordered by time and points with the same
+   * timestamp, e.g. on the boundary of two query ranges, are only kept once.
+   *
+   * @param results The matrices to merge.
+   * @return the merged matrix.
+   */
+  public static Matrix mergeMatrices(List<Matrix> results) {
+    Map<Map<String, String>, Matrix.Metric> byLabels = new LinkedHashMap<>();
+    for (Matrix result : results) {
+      for (Matrix.Metric metric : result.getMetrics()) {
+        byLabels.merge(metric.labels(), metric, ResultMerger::mergeMetrics);
+      }
+    }
+
+    Matrix merged = new Matrix();
+    merged.setMetrics(new ArrayList<>(byLabels.values()));
+    return merged;
+  }
+
+  /**
+   * Remove the log entries at or after a time, e.g. entries on the end boundary of a query range
+   * that the next range returns as well.
+   *
+   * @param streams The streams with entries sorted by timestamp.
+   * @param endNanos The exclusive end in nanoseconds since the epoch.
+   * @return the streams with entries before the end.
+   */
+  public static Streams before(Streams streams, long endNanos) {
+    List<Streams.Stream> truncated = new ArrayList<>(streams.getStreams().size());
+    for (Streams.Stream stream : streams.getStreams()) {
+      List<LogEntry> values = stream.values();
+      int end = values.size();
+      while (end > 0 && values.get(end - 1).ts() >= endNanos) {
+        end--;
+      }
+      if (end == values.size()) {
+        truncated.add(stream);
+      } else if (end > 0) {
+        truncated.add(new Streams.Stream(stream.labels(), values.subList(0, end)));
+      }
+    }
+    Streams result = new Streams();
+    result.setStreams(truncated);
+    return result;
+  }
+
+  /**
+   * Keep the oldest log entries of all streams, like a forward query with a limit does.
+   *
+   * @param streams The streams with entries sorted by timestamp.
+   * @param limit The maximum number of entries.
+   * @return the streams with at most {@code limit} entries in total.
+   */
+  public static Streams limit(Streams streams, int limit) {
+    int size = 0;
+    for (Streams.Stream stream : streams.getStreams()) {
+      size += stream.values().size();
+    }
+    if (size <= limit) {
+      return streams;
+    }
+    long[] timestamps = new long[size];
+    int i = 0;
+    for (Streams.Stream stream : streams.getStreams()) {
+      for (LogEntry entry : stream.values()) {
+        timestamps[i++] = entry.ts();
+      }
+    }
+    Arrays.sort(timestamps);
+    long last = timestamps[limit - 1];
+    // Entries at the last timestamp are kept in stream order until the limit is reached.
+    int atLast = 0;
+    for (int j = limit - 1; j >= 0 && timestamps[j] == last; j--) {
+      atLast++;
+    }
+
+    List<Streams.Stream> limited = new ArrayList<>();
+    for (Streams.Stream stream : streams.getStreams()) {
+      int end = 0;
+      while (end < stream.values().size()) {
+        long ts = stream.values().get(end).ts();
+        if (ts > last || (ts == last && atLast == 0)) {
+          break;
+        }
+        if (ts == last) {
+          atLast--;
+        }
+        end++;
+      }
+      if (end > 0) {
+        limited.add(new Streams.Stream(stream.labels(), stream.values().subList(0, end)));
+      }
+    }
+    Streams result = new Streams();
+    result.setStreams(limited);
+    return result;
+  }
+
+  /** Merge two series that are each sorted by time into one series without duplicate times. */
+  private static Matrix.Metric mergeMetrics(Matrix.Metric left, Matrix.Metric right) {
+    long[] timestamps = new long[left.size() + right.size()];
+    double[] samples = new double[timestamps.length];
+    int i = 0;
+    int j = 0;
+    int size = 0;
+    while (i < left.size() || j < right.size()) {
+      boolean takeLeft =
+          j == right.size() || (i < left.size() && left.timestamps()[i] <= right.timestamps()[j]);
+      long ts = takeLeft ? left.timestamps()[i] : right.timestamps()[j];
+      double sample = takeLeft ? left.samples()[i++] : right.samples()[j++];
+      if (size == 0 || timestamps[size - 1] != ts) {
+        timestamps[size] = ts;
+        samples[size] = sample;
+        size++;
+      }
+    }
+    return new Matrix.Metric(
+        left.labels(), Arrays.copyOf(timestamps, size), Arrays.copyOf(samples, size));
+  }
+
+  /** K-way merge of entry lists that are each sorted by timestamp. */
+  private static List<LogEntry> mergeEntries(List<List<LogEntry>> lists) {
+    if (lists.size() == 1) {
+      return lists.getFirst();
+    }
+    int size = 0;
+    PriorityQueue<Cursor> heap =
+        new PriorityQueue<>(Comparator.comparingLong((Cursor c) -> c.current().ts()));
+    for (List<LogEntry> values : lists) {
+      size += values.size();
+      if (!values.isEmpty()) {
+        heap.add(new Cursor(values, 0));
+      }
+    }
+    List<LogEntry> merged = new ArrayList<>(size);
+    while (!heap.isEmpty()) {
+      Cursor cursor = heap.poll();
+      merged.add(cursor.current());
+      if (cursor.index() + 1 < cursor.values().size()) {
+        heap.add(new Cursor(cursor.values(), cursor.index() + 1));
+      }
+    }
+    return merged;
+  }
+
+  private static <T extends QueryResult.Result> T cast(QueryResult result, Class<T> type) {
+    if (!type.isInstance(result.getData().getResult())) {
+      throw new IllegalArgumentException(
+          "Cannot merge " + result.getData().getResultType() + " into " + type.getSimpleName());
+    }
+    return type.cast(result.getData().getResult());
+  }
+}
@@ -0,0 +1,48 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.jeschkies.loki.client.model;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import java.time.Instant;
+
+/** The result of an instant query that evaluates to a single number, e.g. {@code vector(1)}. */
+@JsonDeserialize(using = ScalarDeserializer.class)
+public final class Scalar extends QueryResult.Result {
+  private Instant time;
+  private double value;
+
+  public Scalar() {}
+
+  public Scalar(Instant time, double value) {
+    this.time = time;
+    this.value = value;
+  }
+
+  /** Returns the evaluation time. */
+  public Instant getTime() {
+    return time;
+  }
+
+  public void setTime(Instant time) {
+    this.time = time;
+  }
+
+  public double getValue() {
+    return value;
+  }
+
+  public void setValue(double value) {
+    this.value = value;
+  }
+}
@@ -0,0 +1,40 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.jeschkies.loki.client.model;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import java.io.IOException;
+import java.time.Instant;
+
+class ScalarDeserializer extends StdDeserializer<Scalar> {
+  ScalarDeserializer() {
+    super(Scalar.class);
+  }
+
+  @Override
+  public Scalar deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+    if (p.currentToken() != JsonToken.START_ARRAY) {
+      return (Scalar) ctxt.handleUnexpectedToken(Scalar.class, p);
+    }
+    p.nextToken();
+    final Instant time = ValueParsing.readInstant(p);
+    p.nextToken();
+    final double value = ValueParsing.readDouble(p);
+    ValueParsing.skipToEndArray(p);
+    return new Scalar(time, value);
+  }
+}
@@ -13,23 +13,23 @@
  */
 package io.github.jeschkies.loki.client.model;
 
+import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.JsonDeserializer;
-import com.google.common.collect.Lists;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 class StreamsDeserializer extends JsonDeserializer<Streams> {
   @Override
   public Streams deserialize(JsonParser jp, DeserializationContext ctxt) throws IOException {
     List<Streams.Stream> streams = new ArrayList<>();
     if (jp.currentToken() == JsonToken.START_ARRAY) {
-      jp.nextToken();
-      if (jp.currentToken() != JsonToken.END_ARRAY) {
-        streams = Lists.newArrayList(jp.readValuesAs(Streams.Stream.class));
+      while (jp.nextToken() == JsonToken.START_OBJECT) {
+        streams.add(readStream(jp));
       }
     }
 
@@ -37,4 +37,31 @@ class StreamsDeserializer extends JsonDeserializer<Streams> {
     s.setStreams(streams);
     return s;
   }
+
+  private static Streams.Stream readStream(JsonParser jp) throws IOException {
+    Map<String, String> labels = Map.of();
+    List<LogEntry> values = new ArrayList<>();
+    while (jp.nextToken() == JsonToken.FIELD_NAME) {
+      String field = jp.currentName();
+      jp.nextToken();
+      switch (field) {
+        case "stream" -> labels = QueryResultReader.readLabels(jp);
+        case "values" -> {
+          if (jp.currentToken() != JsonToken.START_ARRAY) {
+            throw new JsonParseException(jp, "Expected values array");
+          }
+          while (jp.nextToken() == JsonToken.START_ARRAY) {
+            jp.nextToken();
+            final long ts = ValueParsing.readLong(jp);
+            jp.nextToken();
+            final String line = jp.getText();
+            ValueParsing.skipToEndArray(jp);
+            values.add(new LogEntry(ts, line));
+          }
+        }
+        default -> jp.skipChildren();
+      }
+    }
+    return new Streams.Stream(labels, values);
+  }
 }
@@ -0,0 +1,53 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.jeschkies.loki.client.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/** One message of Loki's tail WebSocket. */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class TailResponse {
+  public static TailResponse fromJSON(String json) throws IOException {
+    return QueryResult.mapper.readValue(json, TailResponse.class);
+  }
+
+  public List<Streams.Stream> getStreams() {
+    return streams;
+  }
+
+  public void setStreams(List<Streams.Stream> streams) {
+    this.streams = streams;
+  }
+
+  public List<DroppedEntry> getDroppedEntries() {
+    return droppedEntries;
+  }
+
+  public void setDroppedEntries(List<DroppedEntry> droppedEntries) {
+    this.droppedEntries = droppedEntries;
+  }
+
+  private List<Streams.Stream> streams = List.of();
+
+  @JsonProperty("dropped_entries")
+  private List<DroppedEntry> droppedEntries = List.of();
+
+  /** An entry that Loki could not send because the tail client was too slow. */
+  @JsonIgnoreProperties(ignoreUnknown = true)
+  public record DroppedEntry(Map<String, String> labels, String timestamp) {}
+}
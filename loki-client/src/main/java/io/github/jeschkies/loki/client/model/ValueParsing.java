@@ -0,0 +1,121 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.jeschkies.loki.client.model;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.DateTimeException;
+import java.time.Instant;
+
+/**
+ * Reads the elements of Loki's {@code [ts, value]} pairs directly from the parser's token buffer.
+ */
+final class ValueParsing {
+  private ValueParsing() {
+    throw new UnsupportedOperationException("This is a utility class and cannot be instantiated");
+  }
+
+  /**
+   * Read the current token as a long. Loki sends nanosecond timestamps as strings, which are parsed
+   * from the parser's character buffer without creating a {@link String}. The fraction of a number
+   * with a fraction, e.g. metric sample times in seconds, is truncated.
+   *
+   * @throws JsonParseException when the token is not a number or a string of digits that fits a
+   *     long.
+   */
+  static long readLong(JsonParser p) throws IOException {
+    final JsonToken token = p.currentToken();
+    if (token == JsonToken.VALUE_NUMBER_INT) {
+      return p.getLongValue();
+    }
+    if (token == JsonToken.VALUE_NUMBER_FLOAT) {
+      return (long) p.getDoubleValue();
+    }
+    if (token != JsonToken.VALUE_STRING) {
+      throw new JsonParseException(p, "Expected a number but got " + token);
+    }
+    final char[] chars = p.getTextCharacters();
+    final int offset = p.getTextOffset();
+    final int length = p.getTextLength();
+    // Long.MAX_VALUE has 19 digits. Current epoch nanoseconds have 19 digits as well.
+    if (length == 0 || length > 19) {
+      throw new JsonParseException(p, "Invalid number " + p.getText());
+    }
+    long value = 0;
+    for (int i = offset; i < offset + length; i++) {
+      int digit = chars[i] - '0';
+      if (digit < 0 || digit > 9) {
+        throw new JsonParseException(p, "Invalid number " + p.getText());
+      }
+      if (value > (Long.MAX_VALUE - digit) / 10) {
+        throw new JsonParseException(p, "Number out of range " + p.getText());
+      }
+      value = value * 10 + digit;
+    }
+    return value;
+  }
+
+  /**
+   * Read the current token as a time in seconds with an optional fraction, e.g. the evaluation time
+   * {@code 1722871416.123} of an instant query. The fraction is parsed as a decimal and kept up to
+   * nanoseconds.
+   *
+   * @throws JsonParseException when the token is not a number or a string of a number.
+   */
+  static Instant readInstant(JsonParser p) throws IOException {
+    final JsonToken token = p.currentToken();
+    final BigDecimal seconds;
+    try {
+      seconds =
+          switch (token) {
+            case VALUE_NUMBER_INT, VALUE_NUMBER_FLOAT -> p.getDecimalValue();
+            case VALUE_STRING -> new BigDecimal(p.getText());
+            default -> throw new JsonParseException(p, "Expected a number but got " + token);
+          };
+      final BigDecimal whole = seconds.setScale(0, RoundingMode.FLOOR);
+      final long nanos = seconds.subtract(whole).movePointRight(9).longValue();
+      return Instant.ofEpochSecond(whole.longValueExact(), nanos);
+    } catch (NumberFormatException | ArithmeticException | DateTimeException e) {
+      throw new JsonParseException(p, "Invalid time " + p.getText(), e);
+    }
+  }
+
+  /**
+   * Read the current token as a double. Prometheus style {@code +Inf}, {@code -Inf} and {@code
+   * NaN} strings are supported.
+   */
+  static double readDouble(JsonParser p) throws IOException {
+    if (p.currentToken() != JsonToken.VALUE_STRING) {
+      return p.getValueAsDouble();
+    }
+    final String text = p.getText();
+    return switch (text) {
+      case "+Inf" -> Double.POSITIVE_INFINITY;
+      case "-Inf" -> Double.NEGATIVE_INFINITY;
+      case "NaN" -> Double.NaN;
+      default -> Double.parseDouble(text);
+    };
+  }
+
+  /** Skip optional trailing elements such as structured metadata up to the end of the pair. */
+  static void skipToEndArray(JsonParser p) throws IOException {
+    while (p.nextToken() != JsonToken.END_ARRAY) {
+      p.skipChildren();
+    }
+  }
+}
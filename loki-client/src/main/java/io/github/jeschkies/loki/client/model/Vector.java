@@ -0,0 +1,47 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.jeschkies.loki.client.model;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/** The result of an instant metric query: one sample per series at the evaluation time. */
+@JsonDeserialize(using = VectorDeserializer.class)
+public final class Vector extends QueryResult.Result {
+  List<Sample> samples;
+
+  public Vector() {
+    samples = new ArrayList<>();
+  }
+
+  public List<Sample> getSamples() {
+    return samples;
+  }
+
+  public void setSamples(List<Sample> samples) {
+    this.samples = samples;
+  }
+
+  /**
+   * The sample of one series.
+   *
+   * @param labels The series labels.
+   * @param time The evaluation time.
+   * @param value The sample value.
+   */
+  public record Sample(Map<String, String> labels, Instant time, double value) {}
+}
@@ -0,0 +1,66 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.jeschkies.loki.client.model;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public class VectorDeserializer extends JsonDeserializer<Vector> {
+  @Override
+  public Vector deserialize(JsonParser jp, DeserializationContext ctxt) throws IOException {
+    Vector vector = new Vector();
+    if (jp.currentToken() == JsonToken.START_ARRAY) {
+      List<Vector.Sample> samples = new ArrayList<>();
+      while (jp.nextToken() == JsonToken.START_OBJECT) {
+        samples.add(readSample(jp, ctxt));
+      }
+      vector.setSamples(samples);
+    }
+
+    return vector;
+  }
+
+  private static Vector.Sample readSample(JsonParser jp, DeserializationContext ctxt)
+      throws IOException {
+    Map<String, String> labels = Map.of();
+    Instant time = null;
+    double value = Double.NaN;
+    while (jp.nextToken() == JsonToken.FIELD_NAME) {
+      String field = jp.currentName();
+      jp.nextToken();
+      switch (field) {
+        case "metric" -> labels = QueryResultReader.readLabels(jp);
+        case "value" -> {
+          if (jp.currentToken() != JsonToken.START_ARRAY) {
+            ctxt.handleUnexpectedToken(Vector.Sample.class, jp);
+          }
+          jp.nextToken();
+          time = ValueParsing.readInstant(jp);
+          jp.nextToken();
+          value = ValueParsing.readDouble(jp);
+          ValueParsing.skipToEndArray(jp);
+        }
+        default -> jp.skipChildren();
+      }
+    }
+    return new Vector.Sample(labels, time, value);
+  }
+}
@@ -0,0 +1,125 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.jeschkies.loki.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class TestAsyncCall {
+  private MockWebServer server;
+  private OkHttpClient httpClient;
+
+  @BeforeEach
+  void setup() throws IOException {
+    server = new MockWebServer();
+    server.start();
+    httpClient = new OkHttpClient();
+  }
+
+  @AfterEach
+  void teardown() throws IOException {
+    httpClient.dispatcher().executorService().shutdown();
+    server.shutdown();
+  }
+
+  @Test
+  void testCompleteWithHandledResponse() throws Exception {
+    server.enqueue(new MockResponse().setBody("hello"));
+
+    CompletableFuture<String> result =
+        AsyncCall.enqueue(
+            httpClient, request(), response -> response.body().string(), Runnable::run);
+
+    assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("hello");
+  }
+
+  @Test
+  void testFailWithHandlerException() {
+    server.enqueue(new MockResponse().setResponseCode(500));
+
+    CompletableFuture<Void> result =
+        AsyncCall.enqueue(
+            httpClient,
+            request(),
+            response -> {
+              throw new LokiClientException("Bad response", response.code());
+            },
+            Runnable::run);
+
+    assertThatThrownBy(() -> result.get(5, TimeUnit.SECONDS))
+        .isInstanceOf(ExecutionException.class)
+        .cause()
+        .isInstanceOf(LokiClientException.class)
+        .extracting(e -> ((LokiClientException) e).getStatusCode())
+        .isEqualTo(500);
+  }
+
+  @Test
+  void testFailWhenNotReachable() throws IOException {
+    Request request = request();
+    server.shutdown();
+
+    CompletableFuture<Void> result =
+        AsyncCall.enqueue(httpClient, request, response -> null, Runnable::run);
+
+    assertThatThrownBy(() -> result.get(5, TimeUnit.SECONDS))
+        .isInstanceOf(ExecutionException.class)
+        .cause()
+        .isInstanceOf(LokiClientException.class)
+        .hasCauseInstanceOf(IOException.class);
+  }
+
+  @Test
+  void testCancelCall() throws Exception {
+    server.enqueue(new MockResponse().setBody("late").setHeadersDelay(10, TimeUnit.SECONDS));
+    AtomicBoolean handled = new AtomicBoolean();
+
+    CompletableFuture<Void> result =
+        AsyncCall.enqueue(
+            httpClient,
+            request(),
+            response -> {
+              handled.set(true);
+              return null;
+            },
+            Runnable::run);
+    server.takeRequest(5, TimeUnit.SECONDS);
+    assertThat(result.cancel(true)).isTrue();
+
+    // Cancelling the future cancels the HTTP call, which frees the dispatcher.
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (httpClient.dispatcher().runningCallsCount() > 0 && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    assertThat(httpClient.dispatcher().runningCallsCount()).isZero();
+    assertThat(handled).isFalse();
+  }
+
+  private Request request() {
+    return new Request.Builder().url(server.url("/")).build();
+  }
+}
@@ -0,0 +1,241 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.jeschkies.loki.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.jeschkies.loki.client.model.LogEntry;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TestBatchingPusher {
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+  private static final Map<String, String> LABELS = Map.of("app", "foo");
+
+  /** Records the pushed lines of each request and holds the first request until released. */
+  private static class PushDispatcher extends Dispatcher {
+    final BlockingQueue<List<String>> pushes = new LinkedBlockingQueue<>();
+    final CountDownLatch release = new CountDownLatch(1);
+    volatile boolean holdFirst = false;
+    private final AtomicBoolean first = new AtomicBoolean(true);
+
+    @Override
+    public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+      List<String> lines = new ArrayList<>();
+      try {
+        for (JsonNode stream : MAPPER.readTree(request.getBody().readUtf8()).get("streams")) {
+          stream.get("values").forEach(value -> lines.add(value.get(1).asText()));
+        }
+      } catch (IOException e) {
+        return new MockResponse().setResponseCode(400);
+      }
+      pushes.add(lines);
+      if (holdFirst && first.getAndSet(false)) {
+        release.await(10, TimeUnit.SECONDS);
+      }
+      return new MockResponse().setResponseCode(204);
+    }
+  }
+
+  private MockWebServer server;
+  private PushDispatcher dispatcher;
+  private LokiClient client;
+
+  @BeforeEach
+  void setup() throws IOException {
+    server = new MockWebServer();
+    dispatcher = new PushDispatcher();
+    server.setDispatcher(dispatcher);
+    server.start();
+    client = new LokiClient(new LokiClientConfig(server.url("/").uri(), null));
+  }
+
+  @AfterEach
+  void teardown() throws IOException {
+    dispatcher.release.countDown();
+    server.shutdown();
+  }
+
+  @Test
+  void testFlushFullBatch() throws Exception {
+    BatchingPusherConfig config = new BatchingPusherConfig(100, 3, 0, Duration.ofMinutes(1), null);
+    try (BatchingPusher pusher = new BatchingPusher(client, config)) {
+      for (int i = 0; i < 4; i++) {
+        pusher.push("line " + i, Instant.now(), LABELS);
+      }
+      // The full batch is sent long before the linger time expires.
+      assertThat(dispatcher.pushes.poll(5, TimeUnit.SECONDS))
+          .containsExactly("line 0", "line 1", "line 2");
+      assertThat(dispatcher.pushes.poll(200, TimeUnit.MILLISECONDS)).isNull();
+    }
+    assertThat(dispatcher.pushes.poll()).containsExactly("line 3");
+  }
+
+  @Test
+  void testFlushAfterLinger() throws Exception {
+    BatchingPusherConfig config =
+        new BatchingPusherConfig(100, 1000, 0, Duration.ofMillis(50), null);
+    try (BatchingPusher pusher = new BatchingPusher(client, config)) {
+      pusher.push("line 0", Instant.now(), LABELS);
+      pusher.push("line 1", Instant.now(), LABELS);
+
+      assertThat(dispatcher.pushes.poll(5, TimeUnit.SECONDS)).containsExactly("line 0", "line 1");
+      assertThat(pusher.getQueueDepth()).isZero();
+    }
+  }
+
+  @Test
+  void testDropNewestWhenFull() throws Exception {
+    dispatcher.holdFirst = true;
+    BatchingPusherConfig config =
+        new BatchingPusherConfig(2, 1, 0, null, BatchingPusher.OverflowPolicy.DropNewest);
+    try (BatchingPusher pusher = new BatchingPusher(client, config)) {
+      pusher.push("line 0", Instant.now(), LABELS);
+      assertThat(dispatcher.pushes.poll(5, TimeUnit.SECONDS)).containsExactly("line 0");
+
+      // The sender waits for the first push, so the queue fills up.
+      assertThat(pusher.push("line 1", Instant.now(), LABELS)).isTrue();
+      assertThat(pusher.push("line 2", Instant.now(), LABELS)).isTrue();
+      assertThat(pusher.push("line 3", Instant.now(), LABELS)).isFalse();
+      assertThat(pusher.getDroppedLines()).isEqualTo(1);
+      dispatcher.release.countDown();
+    }
+    assertThat(dispatcher.pushes).containsExactly(List.of("line 1"), List.of("line 2"));
+  }
+
+  @Test
+  void testDropOldestWhenFull() throws Exception {
+    dispatcher.holdFirst = true;
+    BatchingPusherConfig config =
+        new BatchingPusherConfig(2, 1, 0, null, BatchingPusher.OverflowPolicy.DropOldest);
+    try (BatchingPusher pusher = new BatchingPusher(client, config)) {
+      pusher.push("line 0", Instant.now(), LABELS);
+      assertThat(dispatcher.pushes.poll(5, TimeUnit.SECONDS)).containsExactly("line 0");
+
+      for (int i = 1; i < 4; i++) {
+        assertThat(pusher.push("line " + i, Instant.now(), LABELS)).isTrue();
+      }
+      assertThat(pusher.getDroppedLines()).isEqualTo(1);
+      dispatcher.release.countDown();
+    }
+    assertThat(dispatcher.pushes).containsExactly(List.of("line 2"), List.of("line 3"));
+  }
+
+  @Test
+  void testBlockWhenFull() throws Exception {
+    dispatcher.holdFirst = true;
+    BatchingPusherConfig config =
+        new BatchingPusherConfig(1, 1, 0, null, BatchingPusher.OverflowPolicy.Block);
+    try (BatchingPusher pusher = new BatchingPusher(client, config)) {
+      pusher.push("line 0", Instant.now(), LABELS);
+      assertThat(dispatcher.pushes.poll(5, TimeUnit.SECONDS)).containsExactly("line 0");
+      pusher.push("line 1", Instant.now(), LABELS);
+
+      CompletableFuture<Boolean> blocked =
+          CompletableFuture.supplyAsync(
+              () -> {
+                try {
+                  return pusher.push("line 2", Instant.now(), LABELS);
+                } catch (InterruptedException e) {
+                  throw new IllegalStateException(e);
+                }
+              });
+      Thread.sleep(200);
+      assertThat(blocked).isNotDone();
+      dispatcher.release.countDown();
+      assertThat(blocked.get(5, TimeUnit.SECONDS)).isTrue();
+      assertThat(pusher.getDroppedLines()).isZero();
+    }
+    assertThat(dispatcher.pushes).containsExactly(List.of("line 1"), List.of("line 2"));
+  }
+
+  @Test
+  void testCloseSendsPendingLines() throws Exception {
+    BatchingPusherConfig config =
+        new BatchingPusherConfig(100, 1000, 0, Duration.ofMinutes(1), null);
+    BatchingPusher pusher = new BatchingPusher(client, config);
+    for (int i = 0; i < 3; i++) {
+      pusher.push("line " + i, Instant.now(), LABELS);
+    }
+    pusher.close();
+
+    assertThat(dispatcher.pushes.poll()).containsExactly("line 0", "line 1", "line 2");
+    assertThatThrownBy(() -> pusher.push("late", Instant.now(), LABELS))
+        .isInstanceOf(IllegalStateException.class);
+  }
+
+  @Test
+  void testSenderSurvivesRuntimeException() throws Exception {
+    AtomicBoolean fail = new AtomicBoolean(true);
+    LokiClientMetrics metrics =
+        new LokiClientMetrics() {
+          @Override
+          public void linesPushed(int lines) {
+            if (fail.getAndSet(false)) {
+              throw new IllegalStateException("broken metrics");
+            }
+          }
+        };
+    LokiClient failing =
+        new LokiClient(LokiClientConfig.builder(server.url("/").uri()).metrics(metrics).build());
+    BatchingPusherConfig config = new BatchingPusherConfig(100, 1, 0, null, null);
+    try (BatchingPusher pusher = new BatchingPusher(failing, config)) {
+      pusher.push("line 0", Instant.now(), LABELS);
+      assertThat(dispatcher.pushes.poll(5, TimeUnit.SECONDS)).containsExactly("line 0");
+      pusher.push("line 1", Instant.now(), LABELS);
+      assertThat(dispatcher.pushes.poll(5, TimeUnit.SECONDS)).containsExactly("line 1");
+      assertThat(pusher.getFailedLines()).isEqualTo(1);
+    }
+  }
+
+  @Test
+  void testCountRejectedSpooledLines(@TempDir Path directory) throws Exception {
+    try (PushSpool spool = new PushSpool(directory, 1024, 4096)) {
+      // The fake answers protobuf bodies with 400 like Loki answers an invalid push.
+      spool.append(
+          ProtobufPushEncoder.encode(
+              Map.of(LABELS, List.of(new LogEntry(1, "line 0"), new LogEntry(2, "line 1")))));
+      BatchingPusherConfig config =
+          new BatchingPusherConfig(100, 1000, 0, Duration.ofMinutes(1), null);
+      BatchingPusher pusher = new BatchingPusher(client, config, spool);
+      pusher.close();
+
+      assertThat(spool.isEmpty()).isTrue();
+      assertThat(pusher.getFailedLines()).isEqualTo(2);
+      assertThat(server.getRequestCount()).isEqualTo(1);
+    }
+  }
+}
@@ -0,0 +1,64 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.jeschkies.loki.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.github.jeschkies.loki.client.model.Data;
+import java.io.IOException;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class TestExpectedResultType {
+  private static final String EMPTY_VECTOR =
+      "{\"status\":\"success\",\"data\":{\"resultType\":\"vector\",\"result\":[]}}";
+
+  private MockWebServer server;
+  private LokiClient client;
+
+  @BeforeEach
+  void setup() throws IOException {
+    server = new MockWebServer();
+    server.start();
+    client = new LokiClient(new LokiClientConfig(server.url("/").uri(), null));
+  }
+
+  @AfterEach
+  void teardown() throws IOException {
+    server.shutdown();
+  }
+
+  @Test
+  void testClassifyWithoutRequest() throws LokiClientException {
+    assertThat(client.getExpectedResultType("{app=\"foo\"} |= \"error\""))
+        .isEqualTo(Data.ResultType.Streams);
+    assertThat(client.getExpectedResultType("rate({app=\"foo\"}[1m])"))
+        .isEqualTo(Data.ResultType.Matrix);
+    assertThat(server.getRequestCount()).isZero();
+  }
+
+  @Test
+  void testCacheServerAnswer() throws LokiClientException {
+    server.enqueue(new MockResponse().setBody(EMPTY_VECTOR));
+
+    String query = "(rate({app=\"foo\"}[1m]))";
+    assertThat(client.getExpectedResultType(query)).isEqualTo(Data.ResultType.Matrix);
+    assertThat(client.getExpectedResultType(" ( rate({app=\"foo\"}[1m]) )"))
+        .isEqualTo(Data.ResultType.Matrix);
+    assertThat(server.getRequestCount()).isEqualTo(1);
+  }
+}
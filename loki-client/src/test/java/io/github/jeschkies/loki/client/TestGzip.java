@@ -0,0 +1,144 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.jeschkies.loki.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.github.jeschkies.loki.client.model.Streams;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.Map;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+import okio.GzipSink;
+import okio.GzipSource;
+import okio.Okio;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class TestGzip {
+  private static final MediaType JSON = MediaType.parse("application/json");
+  private static final String EMPTY_STREAMS =
+      "{\"status\":\"success\",\"data\":{\"resultType\":\"streams\",\"result\":[]}}";
+
+  private MockWebServer server;
+  private LokiClient client;
+
+  @BeforeEach
+  void setup() throws IOException {
+    server = new MockWebServer();
+    server.start();
+    client =
+        new LokiClient(
+            LokiClientConfig.builder(server.url("/").uri())
+                .compression(LokiClientConfig.Compression.Gzip)
+                .build());
+  }
+
+  @AfterEach
+  void teardown() throws IOException {
+    server.shutdown();
+  }
+
+  @Test
+  void testCompressRoundTrip() throws IOException {
+    String content = "{\"streams\":[]}".repeat(100);
+    RequestBody body = Gzip.compress(RequestBody.create(content, JSON));
+
+    Buffer compressed = new Buffer();
+    body.writeTo(compressed);
+
+    assertThat(body.contentType()).isEqualTo(JSON);
+    assertThat(body.contentLength()).isEqualTo(-1);
+    assertThat(compressed.size()).isLessThan(content.length());
+    assertThat(gunzip(compressed)).isEqualTo(content);
+  }
+
+  @Test
+  void testDecompressGzipResponse() throws IOException {
+    Response gzipped = response(ResponseBody.create(gzip("hello").readByteString(), JSON), "gzip");
+    Response plain = response(ResponseBody.create("hello", JSON), null);
+
+    try (InputStream input = Gzip.responseStream(gzipped)) {
+      assertThat(Okio.buffer(Okio.source(input)).readUtf8()).isEqualTo("hello");
+    }
+    try (InputStream input = Gzip.responseStream(plain)) {
+      assertThat(Okio.buffer(Okio.source(input)).readUtf8()).isEqualTo("hello");
+    }
+  }
+
+  @Test
+  void testPushCompressedBody() throws Exception {
+    server.enqueue(new MockResponse().setResponseCode(204));
+
+    client.pushLogLine("line", Instant.ofEpochSecond(1), Map.of("app", "foo"));
+
+    RecordedRequest request = server.takeRequest();
+    assertThat(request.getHeader("Content-Encoding")).isEqualTo("gzip");
+    assertThat(gunzip(request.getBody()))
+        .isEqualTo(
+            "{\"streams\":[{\"stream\":{\"app\":\"foo\"},\"values\":"
+                + "[[\"1000000000\",\"line\"]]}]}");
+  }
+
+  @Test
+  void testQueryCompressedResponse() throws Exception {
+    server.enqueue(
+        new MockResponse().setHeader("Content-Encoding", "gzip").setBody(gzip(EMPTY_STREAMS)));
+
+    var result =
+        client.rangeQuery("{app=\"foo\"}", Instant.ofEpochSecond(0), Instant.ofEpochSecond(60));
+
+    assertThat(server.takeRequest().getHeader("Accept-Encoding")).isEqualTo("gzip");
+    assertThat(result.getData().getResult()).isInstanceOf(Streams.class);
+  }
+
+  private static Buffer gzip(String content) throws IOException {
+    Buffer compressed = new Buffer();
+    try (var sink = Okio.buffer(new GzipSink(compressed))) {
+      sink.writeUtf8(content);
+    }
+    return compressed;
+  }
+
+  private static String gunzip(Buffer compressed) throws IOException {
+    try (var source = Okio.buffer(new GzipSource(compressed))) {
+      return source.readUtf8();
+    }
+  }
+
+  private static Response response(ResponseBody body, String contentEncoding) {
+    Response.Builder builder =
+        new Response.Builder()
+            .request(new Request.Builder().url("http://localhost/").build())
+            .protocol(Protocol.HTTP_1_1)
+            .code(200)
+            .message("OK")
+            .body(body);
+    if (contentEncoding != null) {
+      builder.header("Content-Encoding", contentEncoding);
+    }
+    return builder.build();
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.jeschkies.loki.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.jupiter.api.Test;
+
+public class TestHttpClientConfig {
+  @Test
+  void testDefaults() {
+    HttpClientConfig defaults = HttpClientConfig.defaults();
+
+    assertThat(defaults)
+        .isEqualTo(
+            new HttpClientConfig(
+                Duration.ofSeconds(10),
+                Duration.ofSeconds(10),
+                5,
+                Duration.ofMinutes(5),
+                64,
+                5,
+                false));
+    // Values that are not positive fall back to the defaults as well.
+    assertThat(new HttpClientConfig(null, null, -1, null, -1, -1, false)).isEqualTo(defaults);
+  }
+
+  @Test
+  void testApplyToOkHttpClient() {
+    OkHttpClient client =
+        LokiClient.newHttpClient(
+            new HttpClientConfig(
+                Duration.ofSeconds(3),
+                Duration.ofSeconds(4),
+                2,
+                Duration.ofMinutes(1),
+                16,
+                8,
+                true));
+
+    assertThat(client.connectTimeoutMillis()).isEqualTo(3000);
+    assertThat(client.writeTimeoutMillis()).isEqualTo(4000);
+    assertThat(client.dispatcher().getMaxRequests()).isEqualTo(16);
+    assertThat(client.dispatcher().getMaxRequestsPerHost()).isEqualTo(8);
+    assertThat(client.protocols()).containsExactly(Protocol.H2_PRIOR_KNOWLEDGE);
+
+    OkHttpClient defaults = LokiClient.newHttpClient(HttpClientConfig.defaults());
+    assertThat(defaults.dispatcher().getMaxRequests()).isEqualTo(64);
+    assertThat(defaults.dispatcher().getMaxRequestsPerHost()).isEqualTo(5);
+    assertThat(defaults.protocols()).doesNotContain(Protocol.H2_PRIOR_KNOWLEDGE);
+  }
+
+  @Test
+  void testKeepAtMostMaxIdleConnections() throws Exception {
+    MockWebServer server = new MockWebServer();
+    server.start();
+    try {
+      OkHttpClient client =
+          LokiClient.newHttpClient(new HttpClientConfig(null, null, 1, null, 0, 0, false));
+      // Concurrent requests open one connection each.
+      List<CompletableFuture<?>> calls = new ArrayList<>();
+      for (int i = 0; i < 3; i++) {
+        server.enqueue(new MockResponse().setHeadersDelay(200, TimeUnit.MILLISECONDS));
+        Request request = new Request.Builder().url(server.url("/")).build();
+        calls.add(AsyncCall.enqueue(client, request, response -> null, Runnable::run));
+      }
+      CompletableFuture.allOf(calls.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+
+      assertThat(server.getRequestCount()).isEqualTo(3);
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+      while (client.connectionPool().idleConnectionCount() > 1 && System.nanoTime() < deadline) {
+        Thread.sleep(10);
+      }
+      assertThat(client.connectionPool().idleConnectionCount()).isEqualTo(1);
+    } finally {
+      server.shutdown();
+    }
+  }
+}
@@ -0,0 +1,67 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.jeschkies.loki.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.github.jeschkies.loki.client.model.Data;
+import io.github.jeschkies.loki.client.model.QueryResult;
+import io.github.jeschkies.loki.client.model.Vector;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Map;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class TestInstantQuery {
+  private MockWebServer server;
+  private LokiClient client;
+
+  @BeforeEach
+  void setup() throws IOException {
+    server = new MockWebServer();
+    server.start();
+    client = new LokiClient(new LokiClientConfig(server.url("/").uri(), null));
+  }
+
+  @AfterEach
+  void teardown() throws IOException {
+    server.shutdown();
+  }
+
+  @Test
+  void testInstantQueryReturnsVector() throws Exception {
+    server.enqueue(
+        new MockResponse()
+            .setBody(
+                "{\"status\":\"success\",\"data\":{\"resultType\":\"vector\",\"result\":["
+                    + "{\"metric\":{\"app\":\"foo\"},\"value\":[1722871416.123,\"2.5\"]}]}}"));
+
+    QueryResult result =
+        client.instantQuery("sum by (app) (rate({app=\"foo\"}[1m]))", Instant.ofEpochSecond(5));
+
+    RecordedRequest request = server.takeRequest();
+    assertThat(request.getRequestUrl().encodedPath()).isEqualTo("/loki/api/v1/query");
+    assertThat(request.getRequestUrl().queryParameter("time")).isEqualTo("5000000000");
+    assertThat(result.getData().getResultType()).isEqualTo(Data.ResultType.Vector);
+    assertThat(((Vector) result.getData().getResult()).getSamples())
+        .containsExactly(
+            new Vector.Sample(
+                Map.of("app", "foo"), Instant.ofEpochSecond(1722871416, 123_000_000), 2.5));
+  }
+}
@@ -10,6 +10,8 @@ import io.github.jeschkies.loki.client.model.Streams;
 import java.io.IOException;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
@@ -41,6 +43,34 @@ class TestIntegration {
     assertThat(streams.getFirst().values().getFirst().getLine()).isEqualTo("line foo");
   }
 
+  @Test
+  void TestRangeQueryPages() throws IOException, LokiClientException {
+    Instant start = Instant.now().minus(Duration.ofHours(3));
+    Instant end = start.plus(Duration.ofHours(2));
+
+    for (int i = 0; i < 5; i++) {
+      client.pushLogLine(
+          "line " + i, start.plus(Duration.ofMinutes(i)), ImmutableMap.of("test", "pages"));
+    }
+    // Two lines on the same nanosecond as a page boundary.
+    client.pushLogLine(
+        "line 5", start.plus(Duration.ofMinutes(5)), ImmutableMap.of("test", "pages"));
+    client.pushLogLine(
+        "line 6", start.plus(Duration.ofMinutes(5)), ImmutableMap.of("test", "pages"));
+    client.flush();
+
+    List<String> lines = new ArrayList<>();
+    var pages = client.rangeQueryPages("{test=\"pages\"}", start, end, 2);
+    while (pages.hasNext()) {
+      for (var stream : pages.next().getStreams()) {
+        stream.values().forEach(entry -> lines.add(entry.getLine()));
+      }
+    }
+    assertThat(lines)
+        .containsExactlyInAnyOrder(
+            "line 0", "line 1", "line 2", "line 3", "line 4", "line 5", "line 6");
+  }
+
   @AfterAll
   public static void teardown() {
     server.close();
@@ -0,0 +1,49 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.jeschkies.loki.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.github.jeschkies.loki.client.model.LogEntry;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import okio.Buffer;
+import org.junit.jupiter.api.Test;
+
+public class TestJsonPushBody {
+  @Test
+  void testWriteStreams() throws IOException {
+    Map<Map<String, String>, List<LogEntry>> streams = new LinkedHashMap<>();
+    streams.put(
+        Map.of("app", "foo"),
+        List.of(new LogEntry(1722876490884664050L, "say \"hi\""), new LogEntry(0L, "")));
+    streams.put(Map.of("app", "bar"), List.of(new LogEntry(7L, "line two")));
+
+    JsonPushBody body = new JsonPushBody(streams);
+    Buffer first = new Buffer();
+    body.writeTo(first);
+    Buffer second = new Buffer();
+    body.writeTo(second);
+
+    String expected =
+        "{\"streams\":["
+            + "{\"stream\":{\"app\":\"foo\"},\"values\":"
+            + "[[\"1722876490884664050\",\"say \\\"hi\\\"\"],[\"0\",\"\"]]},"
+            + "{\"stream\":{\"app\":\"bar\"},\"values\":[[\"7\",\"line two\"]]}]}";
+    assertThat(first.readUtf8()).isEqualTo(expected);
+    assertThat(second.readUtf8()).isEqualTo(expected);
+  }
+}
@@ -0,0 +1,146 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.jeschkies.loki.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.github.jeschkies.loki.client.model.LogEntry;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import okhttp3.Response;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class TestLiveTail {
+  private static final String QUERY = "{app=\"foo\"}";
+
+  private MockWebServer server;
+  private LokiClient client;
+
+  @BeforeEach
+  void setup() throws IOException {
+    server = new MockWebServer();
+    server.start();
+    client = new LokiClient(new LokiClientConfig(server.url("/").uri(), null));
+  }
+
+  @AfterEach
+  void teardown() throws IOException {
+    server.shutdown();
+  }
+
+  @Test
+  void testStreamEntriesAndReportDropped() throws Exception {
+    server.enqueue(
+        upgrade(
+            socket -> {
+              socket.send(message(1, 2));
+              socket.send(
+                  "{\"streams\":[],\"dropped_entries\":"
+                      + "[{\"labels\":{\"app\":\"foo\"},\"timestamp\":\"3\"}]}");
+            }));
+
+    RecordingListener listener = new RecordingListener();
+    try (LiveTail tail = client.tail(QUERY, Instant.ofEpochSecond(0, 1), 10, listener)) {
+      assertThat(listener.lines.poll(5, TimeUnit.SECONDS)).isEqualTo("line 1");
+      assertThat(listener.lines.poll(5, TimeUnit.SECONDS)).isEqualTo("line 2");
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+      while (listener.dropped.get() == 0 && System.nanoTime() < deadline) {
+        Thread.sleep(10);
+      }
+      assertThat(listener.dropped.get()).isEqualTo(1);
+      assertThat(tail.getDroppedEntries()).isEqualTo(1);
+    }
+
+    var url = server.takeRequest().getRequestUrl();
+    assertThat(url.encodedPath()).isEqualTo("/loki/api/v1/tail");
+    assertThat(url.queryParameter("start")).isEqualTo("1");
+    assertThat(url.queryParameter("limit")).isEqualTo("10");
+  }
+
+  @Test
+  void testResumeAfterReconnect() throws Exception {
+    server.enqueue(
+        upgrade(
+            socket -> {
+              socket.send(message(1, 2));
+              socket.close(1000, "restart");
+            }));
+    server.enqueue(upgrade(socket -> socket.send(message(2, 3))));
+
+    RetryPolicy reconnectPolicy =
+        new ExponentialBackoffRetryPolicy(Duration.ofMillis(1), Duration.ofMillis(10), 3);
+    TailConfig config = new TailConfig(0, null, null, reconnectPolicy);
+    RecordingListener listener = new RecordingListener();
+    try (LiveTail ignored = client.tail(QUERY, Instant.ofEpochSecond(0), 0, config, listener)) {
+      assertThat(listener.lines.poll(5, TimeUnit.SECONDS)).isEqualTo("line 1");
+      assertThat(listener.lines.poll(5, TimeUnit.SECONDS)).isEqualTo("line 2");
+      assertThat(listener.lines.poll(5, TimeUnit.SECONDS)).isEqualTo("line 3");
+      assertThat(listener.lines.poll(200, TimeUnit.MILLISECONDS)).isNull();
+    }
+
+    server.takeRequest();
+    assertThat(server.takeRequest().getRequestUrl().queryParameter("start")).isEqualTo("2");
+  }
+
+  private interface OnOpen {
+    void accept(WebSocket socket);
+  }
+
+  private static MockResponse upgrade(OnOpen onOpen) {
+    return new MockResponse()
+        .withWebSocketUpgrade(
+            new WebSocketListener() {
+              @Override
+              public void onOpen(WebSocket socket, Response response) {
+                onOpen.accept(socket);
+              }
+            });
+  }
+
+  private static String message(long... timestamps) {
+    StringJoiner values = new StringJoiner(",");
+    for (long ts : timestamps) {
+      values.add("[\"" + ts + "\",\"line " + ts + "\"]");
+    }
+    return "{\"streams\":[{\"stream\":{\"app\":\"foo\"},\"values\":[" + values + "]}]}";
+  }
+
+  private static class RecordingListener implements LiveTail.Listener {
+    final BlockingQueue<String> lines = new LinkedBlockingQueue<>();
+    final AtomicLong dropped = new AtomicLong();
+
+    @Override
+    public void onEntry(Map<String, String> labels, LogEntry entry) {
+      lines.add(entry.getLine());
+    }
+
+    @Override
+    public void onDropped(long count) {
+      dropped.addAndGet(count);
+    }
+  }
+}
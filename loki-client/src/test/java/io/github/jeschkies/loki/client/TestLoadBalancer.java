@@ -0,0 +1,151 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.jeschkies.loki.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class TestLoadBalancer {
+  private static final String EMPTY_STREAMS =
+      "{\"status\":\"success\",\"data\":{\"resultType\":\"streams\",\"result\":[]}}";
+
+  private static class OkDispatcher extends Dispatcher {
+    @Override
+    public MockResponse dispatch(RecordedRequest request) {
+      return request.getPath().startsWith("/loki/api/v1/push")
+          ? new MockResponse().setResponseCode(204)
+          : new MockResponse().setBody(EMPTY_STREAMS);
+    }
+  }
+
+  private static class UnavailableDispatcher extends Dispatcher {
+    @Override
+    public MockResponse dispatch(RecordedRequest request) {
+      return new MockResponse().setResponseCode(503);
+    }
+  }
+
+  private final List<MockWebServer> servers =
+      List.of(new MockWebServer(), new MockWebServer(), new MockWebServer());
+
+  @BeforeEach
+  void setup() throws IOException {
+    for (MockWebServer server : servers) {
+      server.setDispatcher(new OkDispatcher());
+      server.start();
+    }
+  }
+
+  @AfterEach
+  void teardown() throws IOException {
+    for (MockWebServer server : servers) {
+      server.shutdown();
+    }
+  }
+
+  @Test
+  void testSeparatePushAndQueryEndpoints() throws Exception {
+    LokiClient client =
+        client(
+            new LoadBalancerConfig(
+                List.of(uri(servers.get(0))), List.of(uri(servers.get(1)), uri(servers.get(2)))));
+
+    for (int i = 0; i < 20; i++) {
+      client.pushLogLine("line", Instant.now(), Map.of("app", "foo"));
+      client.rangeQuery("{app=\"foo\"}", Instant.ofEpochSecond(0), Instant.ofEpochSecond(60));
+    }
+
+    assertThat(servers.get(0).getRequestCount()).isEqualTo(20);
+    assertThat(servers.get(1).getRequestCount()).isPositive();
+    assertThat(servers.get(2).getRequestCount()).isPositive();
+    assertThat(servers.get(1).getRequestCount() + servers.get(2).getRequestCount()).isEqualTo(20);
+  }
+
+  @Test
+  void testFailoverOnConnectionError() throws Exception {
+    URI down;
+    try (ServerSocket socket = new ServerSocket(0)) {
+      down = URI.create("http://localhost:" + socket.getLocalPort());
+    }
+    LokiClient client =
+        client(new LoadBalancerConfig(List.of(down, uri(servers.get(0))), List.of()));
+
+    for (int i = 0; i < 10; i++) {
+      client.pushLogLine("line", Instant.now(), Map.of("app", "foo"));
+    }
+
+    assertThat(servers.get(0).getRequestCount()).isEqualTo(10);
+  }
+
+  @Test
+  void testEjectUnavailableEndpoint() throws Exception {
+    servers.get(1).setDispatcher(new UnavailableDispatcher());
+    LokiClient client =
+        client(
+            new LoadBalancerConfig(
+                List.of(uri(servers.get(0)), uri(servers.get(1))),
+                List.of(),
+                1,
+                Duration.ofMinutes(1)));
+
+    int failures = 0;
+    for (int i = 0; i < 20; i++) {
+      try {
+        client.pushLogLine("line", Instant.now(), Map.of("app", "foo"));
+      } catch (LokiClientException e) {
+        failures++;
+      }
+    }
+
+    // The first 503 ejects the endpoint for the rest of the test.
+    assertThat(servers.get(1).getRequestCount()).isLessThanOrEqualTo(1);
+    assertThat(failures).isEqualTo(servers.get(1).getRequestCount());
+    assertThat(servers.get(0).getRequestCount()).isEqualTo(20 - failures);
+  }
+
+  @Test
+  void testKeepEndpointPathPrefix() throws Exception {
+    URI prefixed = servers.get(0).url("/loki-a/").uri();
+    LokiClient client = client(new LoadBalancerConfig(List.of(prefixed), List.of(prefixed)));
+
+    client.pushLogLine("line", Instant.now(), Map.of("app", "foo"));
+    client.rangeQuery("{app=\"foo\"}", Instant.ofEpochSecond(0), Instant.ofEpochSecond(60));
+
+    assertThat(servers.get(0).takeRequest().getPath()).isEqualTo("/loki-a/loki/api/v1/push");
+    assertThat(servers.get(0).takeRequest().getRequestUrl().encodedPath())
+        .isEqualTo("/loki-a/loki/api/v1/query_range");
+  }
+
+  private static LokiClient client(LoadBalancerConfig loadBalancer) {
+    return new LokiClient(LokiClientConfig.builder(null).loadBalancer(loadBalancer).build());
+  }
+
+  private static URI uri(MockWebServer server) {
+    return server.url("/").uri();
+  }
+}
@@ -0,0 +1,56 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.jeschkies.loki.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.github.jeschkies.loki.client.model.Data;
+import org.junit.jupiter.api.Test;
+
+public class TestLogQL {
+  @Test
+  void testClassifyLogQueries() {
+    assertThat(LogQL.classify("{app=\"foo\"}")).contains(Data.ResultType.Streams);
+    assertThat(LogQL.classify(" {app=\"foo\"} |= \"[error]\" | json"))
+        .contains(Data.ResultType.Streams);
+  }
+
+  @Test
+  void testClassifyMetricQueries() {
+    assertThat(LogQL.classify("rate({app=\"foo\"}[1m])")).contains(Data.ResultType.Matrix);
+    assertThat(LogQL.classify("sum by (level) (count_over_time({app=\"foo\"}[5m]))"))
+        .contains(Data.ResultType.Matrix);
+  }
+
+  @Test
+  void testLeaveAmbiguousQueriesToServer() {
+    assertThat(LogQL.classify("(rate({app=\"foo\"}[1m]))")).isEmpty();
+    assertThat(LogQL.classify("1 + 1")).isEmpty();
+    assertThat(LogQL.classify("{app=\"foo\"}[5m]")).isEmpty();
+  }
+
+  @Test
+  void testNormalize() {
+    assertThat(LogQL.normalize(" sum by (level) ( rate({app=\"foo\"} |= \"a  b\" [1m]))"))
+        .isEqualTo("sum by(level)(rate({app=\"foo\"}|=\"a  b\"[1m]))");
+  }
+
+  @Test
+  void testNormalizeComments() {
+    assertThat(LogQL.normalize("{app=\"foo\"} # errors only\n|= \"#error\""))
+        .isEqualTo("{app=\"foo\"}|=\"#error\"");
+    assertThat(LogQL.normalize("{app=\"foo\"} # errors only |= \"error\""))
+        .isEqualTo("{app=\"foo\"}");
+  }
+}
@@ -0,0 +1,187 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.jeschkies.loki.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class TestMultiTenant {
+  private static final String EMPTY_STREAMS =
+      "{\"status\":\"success\",\"data\":{\"resultType\":\"streams\",\"result\":[]}}";
+
+  /** Answers all requests and holds the requests of the tenant "noisy" until released. */
+  private static class TenantDispatcher extends Dispatcher {
+    final BlockingQueue<RecordedRequest> requests = new LinkedBlockingQueue<>();
+    final CountDownLatch release = new CountDownLatch(1);
+    final AtomicInteger inFlight = new AtomicInteger();
+    final AtomicInteger maxInFlight = new AtomicInteger();
+
+    @Override
+    public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+      requests.add(request);
+      maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+      try {
+        if ("noisy".equals(request.getHeader("X-Scope-OrgID"))) {
+          release.await(10, TimeUnit.SECONDS);
+        }
+      } finally {
+        inFlight.decrementAndGet();
+      }
+      return request.getPath().startsWith("/loki/api/v1/push")
+          ? new MockResponse().setResponseCode(204)
+          : new MockResponse().setBody(EMPTY_STREAMS);
+    }
+  }
+
+  private MockWebServer server;
+  private TenantDispatcher dispatcher;
+  private LokiClient client;
+
+  @BeforeEach
+  void setup() throws IOException {
+    server = new MockWebServer();
+    dispatcher = new TenantDispatcher();
+    server.setDispatcher(dispatcher);
+    server.start();
+    client = new LokiClient(new LokiClientConfig(server.url("/").uri(), null));
+  }
+
+  @AfterEach
+  void teardown() throws IOException {
+    dispatcher.release.countDown();
+    server.shutdown();
+  }
+
+  @Test
+  void testTenantHeader() throws Exception {
+    LokiClient tenant = client.forTenant("team-a");
+    tenant.pushLogLine("line", Instant.now(), Map.of("app", "foo"));
+    tenant.rangeQuery("{app=\"foo\"}", Instant.ofEpochSecond(0), Instant.ofEpochSecond(60));
+    client.rangeQuery("{app=\"foo\"}", Instant.ofEpochSecond(0), Instant.ofEpochSecond(60));
+
+    assertThat(dispatcher.requests.take().getHeader("X-Scope-OrgID")).isEqualTo("team-a");
+    assertThat(dispatcher.requests.take().getHeader("X-Scope-OrgID")).isEqualTo("team-a");
+    assertThat(dispatcher.requests.take().getHeader("X-Scope-OrgID")).isNull();
+  }
+
+  @Test
+  void testNoisyTenantDoesNotDelayOthers() throws Exception {
+    BatchingPusherConfig config =
+        new BatchingPusherConfig(10, 5, 0, null, BatchingPusher.OverflowPolicy.DropNewest);
+    try (MultiTenantPusher pusher = new MultiTenantPusher(client, config, 1)) {
+      for (int i = 0; i < 100; i++) {
+        pusher.push("noisy", "line " + i, Instant.now(), Map.of("app", "foo"));
+      }
+      pusher.push("quiet", "hello", Instant.now(), Map.of("app", "bar"));
+
+      // The first batch of the noisy tenant hangs, the quiet tenant's batch still goes through.
+      RecordedRequest first = dispatcher.requests.poll(5, TimeUnit.SECONDS);
+      RecordedRequest second = dispatcher.requests.poll(5, TimeUnit.SECONDS);
+      assertThat(List.of(first.getHeader("X-Scope-OrgID"), second.getHeader("X-Scope-OrgID")))
+          .containsExactlyInAnyOrder("noisy", "quiet");
+      assertThat(pusher.getDroppedLines("noisy")).isPositive();
+      assertThat(pusher.getDroppedLines("quiet")).isZero();
+      dispatcher.release.countDown();
+    }
+    assertThat(dispatcher.maxInFlight.get()).isEqualTo(2);
+  }
+
+  @Test
+  void testConcurrencyLimitPerTenant() throws Exception {
+    LokiClient tenant = client.forTenant("noisy", 1);
+    List<CompletableFuture<?>> queries =
+        List.of(
+            tenant.instantQueryAsync("{app=\"foo\"}", Instant.now(), Runnable::run),
+            tenant.instantQueryAsync("{app=\"bar\"}", Instant.now(), Runnable::run));
+
+    assertThat(dispatcher.requests.poll(5, TimeUnit.SECONDS)).isNotNull();
+    // The second query waits for the permit of the first one.
+    assertThat(dispatcher.requests.poll(200, TimeUnit.MILLISECONDS)).isNull();
+    dispatcher.release.countDown();
+    CompletableFuture.allOf(queries.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+    assertThat(dispatcher.maxInFlight.get()).isEqualTo(1);
+  }
+
+  @Test
+  void testWaitingTenantDoesNotOccupyDispatcher() throws Exception {
+    LokiClient shared =
+        new LokiClient(
+            LokiClientConfig.builder(server.url("/").uri())
+                .httpClientConfig(new HttpClientConfig(null, null, 0, null, 0, 2, false))
+                .build());
+    LokiClient noisy = shared.forTenant("noisy", 1);
+    List<CompletableFuture<?>> queries =
+        List.of(
+            noisy.instantQueryAsync("{app=\"foo\"}", Instant.now(), Runnable::run),
+            noisy.instantQueryAsync("{app=\"bar\"}", Instant.now(), Runnable::run));
+    assertThat(dispatcher.requests.poll(5, TimeUnit.SECONDS)).isNotNull();
+
+    // The second noisy query waits for a permit outside of the dispatcher, which leaves a slot.
+    shared
+        .forTenant("quiet", 1)
+        .instantQueryAsync("{app=\"foo\"}", Instant.now(), Runnable::run)
+        .get(5, TimeUnit.SECONDS);
+    dispatcher.release.countDown();
+    CompletableFuture.allOf(queries.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+  }
+
+  @Test
+  void testCloseIdleTenants() throws Exception {
+    BatchingPusherConfig config = new BatchingPusherConfig(10, 1, 0, null, null);
+    try (MultiTenantPusher pusher = new MultiTenantPusher(client, config, 1)) {
+      pusher.push("quiet", "hello", Instant.now(), Map.of("app", "foo"));
+      assertThat(dispatcher.requests.poll(5, TimeUnit.SECONDS)).isNotNull();
+
+      assertThat(pusher.closeIdle(Duration.ofMinutes(1))).isEmpty();
+      assertThat(pusher.closeIdle(Duration.ZERO)).containsExactly("quiet");
+      assertThat(pusher.getTenants()).isEmpty();
+
+      // The tenant gets a new pusher when it pushes again.
+      pusher.push("quiet", "again", Instant.now(), Map.of("app", "foo"));
+      assertThat(dispatcher.requests.poll(5, TimeUnit.SECONDS)).isNotNull();
+      assertThat(pusher.getTenants()).isEqualTo(Set.of("quiet"));
+    }
+  }
+
+  @Test
+  void testPushAfterClose() {
+    MultiTenantPusher pusher =
+        new MultiTenantPusher(client, new BatchingPusherConfig(10, 1, 0, null, null), 1);
+    pusher.close();
+
+    assertThatThrownBy(() -> pusher.push("late", "line", Instant.now(), Map.of("app", "foo")))
+        .isInstanceOf(IllegalStateException.class);
+    assertThat(pusher.getTenants()).isEmpty();
+  }
+}
@@ -0,0 +1,126 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.jeschkies.loki.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.google.protobuf.CodedInputStream;
+import io.airlift.compress.snappy.SnappyDecompressor;
+import io.github.jeschkies.loki.client.model.LogEntry;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+public class TestProtobufPushEncoder {
+  private record DecodedEntry(
+      long seconds, int nanos, String line, Map<String, String> structuredMetadata) {}
+
+  private record DecodedStream(String labels, List<DecodedEntry> entries) {}
+
+  @Test
+  void testEncodeDecodes() throws IOException {
+    Map<Map<String, String>, List<LogEntry>> streams = new LinkedHashMap<>();
+    Map<String, String> labels = new LinkedHashMap<>();
+    labels.put("app", "foo");
+    labels.put("msg", "say \"hi\"");
+    streams.put(labels, List.of(entry(1722876490884664050L, "line one"), entry(2000000000L, "")));
+    streams.put(
+        Map.of("app", "bar"), List.of(new LogEntry(1L, "line two", Map.of("trace_id", "abc"))));
+
+    byte[] compressed = ProtobufPushEncoder.encode(streams);
+    byte[] raw = new byte[SnappyDecompressor.getUncompressedLength(compressed, 0)];
+    new SnappyDecompressor().decompress(compressed, 0, compressed.length, raw, 0, raw.length);
+    assertThat(raw).isEqualTo(ProtobufPushEncoder.encodePushRequest(streams));
+
+    List<DecodedStream> decoded = decodePushRequest(CodedInputStream.newInstance(raw));
+    assertThat(decoded)
+        .containsExactly(
+            new DecodedStream(
+                "{app=\"foo\", msg=\"say \\\"hi\\\"\"}",
+                List.of(
+                    new DecodedEntry(1722876490L, 884664050, "line one", Map.of()),
+                    new DecodedEntry(2L, 0, "", Map.of()))),
+            new DecodedStream(
+                "{app=\"bar\"}",
+                List.of(new DecodedEntry(0L, 1, "line two", Map.of("trace_id", "abc")))));
+    assertThat(ProtobufPushEncoder.countEntries(compressed)).isEqualTo(3);
+  }
+
+  private static LogEntry entry(long ts, String line) {
+    LogEntry entry = new LogEntry();
+    entry.setTs(ts);
+    entry.setLine(line);
+    return entry;
+  }
+
+  private static List<DecodedStream> decodePushRequest(CodedInputStream input)
+      throws IOException {
+    List<DecodedStream> streams = new ArrayList<>();
+    while (!input.isAtEnd()) {
+      assertThat(input.readTag() >>> 3).isEqualTo(1);
+      int limit = input.pushLimit(input.readRawVarint32());
+      String labels = null;
+      List<DecodedEntry> entries = new ArrayList<>();
+      while (!input.isAtEnd()) {
+        int field = input.readTag() >>> 3;
+        if (field == 1) {
+          labels = input.readString();
+        } else {
+          assertThat(field).isEqualTo(2);
+          int entryLimit = input.pushLimit(input.readRawVarint32());
+          entries.add(decodeEntry(input));
+          input.popLimit(entryLimit);
+        }
+      }
+      input.popLimit(limit);
+      streams.add(new DecodedStream(labels, entries));
+    }
+    return streams;
+  }
+
+  private static DecodedEntry decodeEntry(CodedInputStream input) throws IOException {
+    long seconds = 0;
+    int nanos = 0;
+    String line = "";
+    Map<String, String> structuredMetadata = new LinkedHashMap<>();
+    while (!input.isAtEnd()) {
+      int field = input.readTag() >>> 3;
+      if (field == 1) {
+        int limit = input.pushLimit(input.readRawVarint32());
+        while (!input.isAtEnd()) {
+          if (input.readTag() >>> 3 == 1) {
+            seconds = input.readInt64();
+          } else {
+            nanos = input.readInt32();
+          }
+        }
+        input.popLimit(limit);
+      } else if (field == 2) {
+        line = input.readString();
+      } else {
+        assertThat(field).isEqualTo(3);
+        int limit = input.pushLimit(input.readRawVarint32());
+        assertThat(input.readTag() >>> 3).isEqualTo(1);
+        String name = input.readString();
+        assertThat(input.readTag() >>> 3).isEqualTo(2);
+        structuredMetadata.put(name, input.readString());
+        input.popLimit(limit);
+      }
+    }
+    return new DecodedEntry(seconds, nanos, line, structuredMetadata);
+  }
+}
@@ -0,0 +1,74 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.jeschkies.loki.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.github.jeschkies.loki.client.model.LogEntry;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class TestPush {
+  private MockWebServer server;
+  private LokiClient client;
+
+  @BeforeEach
+  void setup() throws IOException {
+    server = new MockWebServer();
+    server.start();
+    client = new LokiClient(new LokiClientConfig(server.url("/").uri(), null));
+  }
+
+  @AfterEach
+  void teardown() throws IOException {
+    server.shutdown();
+  }
+
+  @Test
+  void testPushSortedStreamsWithStructuredMetadata() throws Exception {
+    server.enqueue(new MockResponse().setResponseCode(204));
+
+    client.push(
+        List.of(
+            new PushStream(
+                Map.of("app", "foo"),
+                List.of(new LogEntry(3, "c"), new LogEntry(1, "a", Map.of("trace_id", "t1")))),
+            new PushStream(Map.of("app", "bar"), List.of()),
+            new PushStream(Map.of("app", "foo"), List.of(new LogEntry(2, "b")))));
+
+    assertThat(server.takeRequest().getBody().readUtf8())
+        .isEqualTo(
+            "{\"streams\":[{\"stream\":{\"app\":\"foo\"},\"values\":"
+                + "[[\"1\",\"a\",{\"trace_id\":\"t1\"}],[\"2\",\"b\"],[\"3\",\"c\"]]}]}");
+  }
+
+  @Test
+  void testPushNullStructuredMetadata() throws Exception {
+    server.enqueue(new MockResponse().setResponseCode(204));
+    LogEntry entry = new LogEntry(1, "a", Map.of("trace_id", "t1"));
+    entry.setStructuredMetadata(null);
+
+    client.push(List.of(new PushStream(Map.of("app", "foo"), List.of(entry))));
+
+    assertThat(entry.getStructuredMetadata()).isEmpty();
+    assertThat(server.takeRequest().getBody().readUtf8())
+        .isEqualTo("{\"streams\":[{\"stream\":{\"app\":\"foo\"},\"values\":[[\"1\",\"a\"]]}]}");
+  }
+}
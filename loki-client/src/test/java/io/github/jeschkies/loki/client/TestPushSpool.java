@@ -0,0 +1,98 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.jeschkies.loki.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TestPushSpool {
+  @TempDir Path directory;
+
+  @Test
+  void testReplayInOrderAfterRestart() throws IOException {
+    try (PushSpool spool = new PushSpool(directory, 32, 1024)) {
+      for (int i = 0; i < 5; i++) {
+        spool.append(bytes("record " + i));
+      }
+      assertThat(string(spool.peek())).isEqualTo("record 0");
+      spool.commit();
+    }
+    assertThat(segmentCount()).isGreaterThan(1);
+
+    try (PushSpool spool = new PushSpool(directory, 32, 1024)) {
+      for (int i = 1; i < 5; i++) {
+        assertThat(string(spool.peek())).isEqualTo("record " + i);
+        // Peeking again returns the same record until it is committed.
+        assertThat(string(spool.peek())).isEqualTo("record " + i);
+        spool.commit();
+      }
+      assertThat(spool.peek()).isNull();
+      assertThat(spool.isEmpty()).isTrue();
+    }
+    assertThat(segmentCount()).isEqualTo(1);
+  }
+
+  @Test
+  void testDropOldestSegmentsWhenFull() throws IOException {
+    try (PushSpool spool = new PushSpool(directory, 32, 64)) {
+      for (int i = 0; i < 10; i++) {
+        spool.append(bytes("record " + i));
+      }
+      assertThat(spool.getSizeBytes()).isLessThanOrEqualTo(64);
+      assertThat(spool.getDroppedBytes()).isGreaterThan(0);
+      assertThat(string(spool.peek())).isNotEqualTo("record 0");
+    }
+  }
+
+  @Test
+  void testTruncateTornWrite() throws IOException {
+    try (PushSpool spool = new PushSpool(directory, 1024, 4096)) {
+      spool.append(bytes("complete"));
+    }
+    try (Stream<Path> files = Files.list(directory)) {
+      Path segment = files.filter(f -> f.toString().endsWith(".wal")).findFirst().orElseThrow();
+      Files.write(segment, new byte[] {0, 0, 0, 42, 1, 2}, StandardOpenOption.APPEND);
+    }
+
+    try (PushSpool spool = new PushSpool(directory, 1024, 4096)) {
+      assertThat(string(spool.peek())).isEqualTo("complete");
+      spool.commit();
+      assertThat(spool.peek()).isNull();
+      spool.append(bytes("after restart"));
+      assertThat(string(spool.peek())).isEqualTo("after restart");
+    }
+  }
+
+  private long segmentCount() throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.filter(f -> f.toString().endsWith(".wal")).count();
+    }
+  }
+
+  private static byte[] bytes(String value) {
+    return value.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static String string(byte[] value) {
+    return new String(value, StandardCharsets.UTF_8);
+  }
+}
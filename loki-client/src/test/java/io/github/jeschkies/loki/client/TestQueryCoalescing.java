@@ -0,0 +1,117 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.jeschkies.loki.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.github.jeschkies.loki.client.model.QueryResult;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class TestQueryCoalescing {
+  private static final String EMPTY_STREAMS =
+      "{\"status\":\"success\",\"data\":{\"resultType\":\"streams\",\"result\":[]}}";
+
+  private MockWebServer server;
+  private LokiClient client;
+  private ExecutorService executor;
+
+  @BeforeEach
+  void setup() throws IOException {
+    server = new MockWebServer();
+    server.start();
+    client =
+        new LokiClient(
+            LokiClientConfig.builder(server.url("/").uri()).coalesceQueries(true).build());
+    executor = Executors.newFixedThreadPool(8);
+  }
+
+  @AfterEach
+  void teardown() throws IOException {
+    executor.shutdownNow();
+    server.shutdown();
+  }
+
+  @Test
+  void testConcurrentIdenticalQueriesShareOneRequest() throws Exception {
+    // The delay keeps the first request in flight until all callers joined it.
+    server.enqueue(
+        new MockResponse().setBody(EMPTY_STREAMS).setHeadersDelay(500, TimeUnit.MILLISECONDS));
+    server.enqueue(new MockResponse().setBody(EMPTY_STREAMS));
+    Instant start = Instant.ofEpochSecond(0);
+    Instant end = Instant.ofEpochSecond(60);
+
+    List<CompletableFuture<QueryResult>> results = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      String query = i % 2 == 0 ? "{app=\"foo\"} |= \"error\"" : "{app = \"foo\"}  |=  \"error\"";
+      results.add(
+          CompletableFuture.supplyAsync(
+              () -> {
+                try {
+                  return client.rangeQuery(query, start, end);
+                } catch (LokiClientException e) {
+                  throw new UncheckedLokiClientException(e);
+                }
+              },
+              executor));
+    }
+    QueryResult first = results.getFirst().get(5, TimeUnit.SECONDS);
+    for (CompletableFuture<QueryResult> result : results) {
+      assertThat(result.get(5, TimeUnit.SECONDS)).isSameAs(first);
+    }
+    assertThat(server.getRequestCount()).isEqualTo(1);
+
+    // Completed queries are not served again.
+    client.rangeQuery("{app=\"foo\"} |= \"error\"", start, end);
+    assertThat(server.getRequestCount()).isEqualTo(2);
+  }
+
+  @Test
+  void testFailureIsNotRemembered() throws Exception {
+    server.enqueue(new MockResponse().setResponseCode(400));
+    server.enqueue(new MockResponse().setBody(EMPTY_STREAMS));
+    Instant start = Instant.ofEpochSecond(0);
+    Instant end = Instant.ofEpochSecond(60);
+
+    assertThatThrownBy(() -> client.rangeQuery("{app=\"foo\"}", start, end))
+        .isInstanceOf(LokiClientException.class);
+    assertThat(client.rangeQueryAsync("{app=\"foo\"}", start, end, Runnable::run).get())
+        .isNotNull();
+    assertThat(server.getRequestCount()).isEqualTo(2);
+  }
+
+  @Test
+  void testQueryIsSentUnchanged() throws Exception {
+    server.enqueue(new MockResponse().setBody(EMPTY_STREAMS));
+    String query = "{app=\"foo\"} # errors only\n|= \"error\"";
+
+    client.rangeQuery(query, Instant.ofEpochSecond(0), Instant.ofEpochSecond(60));
+
+    RecordedRequest request = server.takeRequest(5, TimeUnit.SECONDS);
+    assertThat(request.getRequestUrl().queryParameter("query")).isEqualTo(query);
+  }
+}
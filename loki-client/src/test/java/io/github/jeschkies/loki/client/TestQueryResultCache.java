@@ -0,0 +1,117 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.jeschkies.loki.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.github.jeschkies.loki.client.model.Matrix;
+import io.github.jeschkies.loki.client.model.QueryResult;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.StringJoiner;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class TestQueryResultCache {
+  private static final String QUERY = "sum(rate({app=\"foo\"}[1m]))";
+  private static final long T0 = 1722871380;
+  private static final Duration STEP = Duration.ofSeconds(60);
+
+  private MockWebServer server;
+  private QueryResultCache cache;
+
+  @BeforeEach
+  void setup() throws IOException {
+    server = new MockWebServer();
+    server.start();
+    LokiClient client = new LokiClient(new LokiClientConfig(server.url("/").uri(), null));
+    cache = new QueryResultCache(client, 1 << 20, Duration.ofMinutes(10));
+  }
+
+  @AfterEach
+  void teardown() throws IOException {
+    server.shutdown();
+  }
+
+  @Test
+  void testOnlyFetchMissingTail() throws Exception {
+    server.enqueue(matrixResponse(T0, T0 + 600));
+    server.enqueue(matrixResponse(T0 + 660, T0 + 900));
+
+    var first = cache.rangeQuery(QUERY, at(T0), at(T0 + 600), STEP);
+    String formatted = "sum(rate(\n  {app=\"foo\"} # all levels\n  [1m]))";
+    var second = cache.rangeQuery(formatted, at(T0 + 300), at(T0 + 900), STEP);
+
+    assertThat(metric(first).size()).isEqualTo(11);
+    assertThat(metric(second).timestamps()).startsWith(T0 + 300).endsWith(T0 + 900).hasSize(11);
+    assertThat(server.getRequestCount()).isEqualTo(2);
+    server.takeRequest();
+    RecordedRequest tail = server.takeRequest();
+    assertThat(tail.getRequestUrl().queryParameter("query")).isEqualTo(formatted);
+    assertThat(tail.getRequestUrl().queryParameter("start")).isEqualTo((T0 + 660) + "000000000");
+    assertThat(tail.getRequestUrl().queryParameter("step")).isEqualTo("60000ms");
+  }
+
+  @Test
+  void testAnswerFromCacheAndAlignToStep() throws Exception {
+    server.enqueue(matrixResponse(T0, T0 + 600));
+
+    cache.rangeQuery(QUERY, at(T0), at(T0 + 600), STEP);
+    var cached = cache.rangeQuery(QUERY, at(T0 + 1), at(T0 + 599), STEP);
+
+    assertThat(metric(cached).timestamps()).startsWith(T0 + 60).endsWith(T0 + 540).hasSize(9);
+    assertThat(server.getRequestCount()).isEqualTo(1);
+  }
+
+  @Test
+  void testDoNotCacheFreshSamples() throws Exception {
+    long now = Instant.now().getEpochSecond() / 60 * 60;
+    server.enqueue(matrixResponse(now - 1800, now));
+    server.enqueue(matrixResponse(now - 540, now));
+
+    cache.rangeQuery(QUERY, at(now - 1800), at(now), STEP);
+    cache.rangeQuery(QUERY, at(now - 1800), at(now), STEP);
+
+    assertThat(server.getRequestCount()).isEqualTo(2);
+    server.takeRequest();
+    long start = Long.parseLong(server.takeRequest().getRequestUrl().queryParameter("start"));
+    assertThat(start).isGreaterThan((now - 1800) * 1_000_000_000L);
+  }
+
+  private static Instant at(long seconds) {
+    return Instant.ofEpochSecond(seconds);
+  }
+
+  private static Matrix.Metric metric(QueryResult result) {
+    return ((Matrix) result.getData().getResult()).getMetrics().getFirst();
+  }
+
+  private static MockResponse matrixResponse(long from, long to) {
+    StringJoiner values = new StringJoiner(",");
+    for (long ts = from; ts <= to; ts += 60) {
+      values.add("[" + ts + ",\"" + ts % 100 + "\"]");
+    }
+    return new MockResponse()
+        .setBody(
+            "{\"status\":\"success\",\"data\":{\"resultType\":\"matrix\",\"result\":"
+                + "[{\"metric\":{\"app\":\"foo\"},\"values\":["
+                + values
+                + "]}]}}");
+  }
+}
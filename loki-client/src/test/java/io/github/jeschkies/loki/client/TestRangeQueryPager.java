@@ -0,0 +1,205 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.jeschkies.loki.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.github.jeschkies.loki.client.model.LogEntry;
+import io.github.jeschkies.loki.client.model.Streams;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import okhttp3.HttpUrl;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class TestRangeQueryPager {
+  private record Entry(String app, long ts, String line) {}
+
+  /**
+   * Answers forward range queries like Loki: at most {@code limit} entries from start inclusive to
+   * end exclusive, oldest first.
+   */
+  private static class LokiDispatcher extends Dispatcher {
+    final List<Entry> entries = new ArrayList<>();
+    final BlockingQueue<HttpUrl> requests = new LinkedBlockingQueue<>();
+
+    @Override
+    public MockResponse dispatch(RecordedRequest request) {
+      HttpUrl url = request.getRequestUrl();
+      requests.add(url);
+      if (!"forward".equals(url.queryParameter("direction"))) {
+        return new MockResponse().setResponseCode(400);
+      }
+      long start = Long.parseLong(url.queryParameter("start"));
+      long end = Long.parseLong(url.queryParameter("end"));
+      int limit = Integer.parseInt(url.queryParameter("limit"));
+
+      Map<String, StringJoiner> streams = new LinkedHashMap<>();
+      entries.stream()
+          .filter(entry -> entry.ts() >= start && entry.ts() < end)
+          .limit(limit)
+          .forEach(
+              entry ->
+                  streams
+                      .computeIfAbsent(entry.app(), app -> new StringJoiner(","))
+                      .add("[\"" + entry.ts() + "\",\"" + entry.line() + "\"]"));
+      StringJoiner result = new StringJoiner(",");
+      streams.forEach(
+          (app, values) ->
+              result.add("{\"stream\":{\"app\":\"" + app + "\"},\"values\":[" + values + "]}"));
+      return new MockResponse()
+          .setBody(
+              "{\"status\":\"success\",\"data\":{\"resultType\":\"streams\",\"result\":["
+                  + result
+                  + "]}}");
+    }
+  }
+
+  private MockWebServer server;
+  private LokiDispatcher dispatcher;
+  private LokiClient client;
+
+  @BeforeEach
+  void setup() throws IOException {
+    server = new MockWebServer();
+    dispatcher = new LokiDispatcher();
+    server.setDispatcher(dispatcher);
+    server.start();
+    client = new LokiClient(new LokiClientConfig(server.url("/").uri(), null));
+  }
+
+  @AfterEach
+  void teardown() throws IOException {
+    server.shutdown();
+  }
+
+  @Test
+  void testEntriesOnPageBoundaryAreReturnedOnce() {
+    dispatcher.entries.addAll(
+        List.of(
+            new Entry("a", 1, "one"),
+            new Entry("a", 2, "two"),
+            new Entry("a", 3, "three a"),
+            new Entry("b", 3, "three b"),
+            new Entry("a", 3, "three c"),
+            new Entry("b", 4, "four"),
+            new Entry("a", 5, "five")));
+
+    List<String> lines = readAll(client.rangeQueryPages("{app=~\".+\"}", at(0), at(10), 3));
+
+    assertThat(lines)
+        .containsExactlyInAnyOrder("one", "two", "three a", "three b", "three c", "four", "five");
+    assertThat(dispatcher.requests)
+        .extracting(url -> url.queryParameter("start"))
+        .containsExactly("0", "3", "3", "4");
+  }
+
+  @Test
+  void testMoveAheadOfFullBoundaryPage() {
+    // Loki cannot return more entries of one nanosecond than the page limit.
+    dispatcher.entries.addAll(
+        List.of(
+            new Entry("a", 1, "one"),
+            new Entry("a", 2, "two a"),
+            new Entry("a", 2, "two b"),
+            new Entry("a", 2, "two c"),
+            new Entry("a", 2, "two d"),
+            new Entry("a", 3, "three")));
+
+    List<String> lines = readAll(client.rangeQueryPages("{app=\"a\"}", at(0), at(10), 3));
+
+    assertThat(lines).containsExactly("one", "two a", "two b", "two c", "three");
+    assertThat(dispatcher.requests)
+        .extracting(url -> url.queryParameter("start"))
+        .containsExactly("0", "2", "2", "3");
+  }
+
+  @Test
+  void testKeepEndOfRange() {
+    dispatcher.entries.addAll(
+        List.of(
+            new Entry("a", 1, "one"),
+            new Entry("a", 2, "two"),
+            new Entry("a", 3, "three"),
+            new Entry("a", 4, "four")));
+
+    List<String> lines = readAll(client.rangeQueryPages("{app=\"a\"}", at(0), at(3), 2));
+
+    assertThat(lines).containsExactly("one", "two");
+    assertThat(dispatcher.requests)
+        .extracting(url -> url.queryParameter("end"))
+        .containsExactly("3", "3");
+  }
+
+  @Test
+  void testEndAfterPartialPage() {
+    dispatcher.entries.addAll(List.of(new Entry("a", 1, "one"), new Entry("a", 2, "two")));
+
+    RangeQueryPager pager = client.rangeQueryPages("{app=\"a\"}", at(0), at(10), 2);
+
+    assertThat(pager.hasNext()).isTrue();
+    assertThat(lines(pager.next())).containsExactly("one", "two");
+    // A full page needs one more request to find out that there are no more entries.
+    assertThat(pager.hasNext()).isFalse();
+    assertThat(dispatcher.requests).hasSize(2);
+  }
+
+  @Test
+  void testRejectMetricQueries() {
+    server.setDispatcher(
+        new Dispatcher() {
+          @Override
+          public MockResponse dispatch(RecordedRequest request) {
+            return new MockResponse()
+                .setBody(
+                    "{\"status\":\"success\",\"data\":{\"resultType\":\"matrix\",\"result\":[]}}");
+          }
+        });
+
+    RangeQueryPager pager = client.rangeQueryPages("rate({app=\"a\"}[1m])", at(0), at(10), 2);
+
+    assertThatThrownBy(pager::hasNext).isInstanceOf(UncheckedLokiClientException.class);
+  }
+
+  private static Instant at(long nanos) {
+    return Time.instantFromNanos(nanos);
+  }
+
+  private static List<String> readAll(RangeQueryPager pager) {
+    List<String> lines = new ArrayList<>();
+    pager.forEachRemaining(page -> lines.addAll(lines(page)));
+    return lines;
+  }
+
+  private static List<String> lines(Streams page) {
+    List<String> lines = new ArrayList<>();
+    for (Streams.Stream stream : page.getStreams()) {
+      stream.values().stream().map(LogEntry::getLine).forEach(lines::add);
+    }
+    return lines;
+  }
+}
@@ -0,0 +1,215 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.jeschkies.loki.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.github.jeschkies.loki.client.model.Streams;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class TestRetry {
+  private static final String EMPTY_STREAMS =
+      "{\"status\":\"success\",\"data\":{\"resultType\":\"streams\",\"result\":[]}}";
+  private static final String MALFORMED =
+      "{\"status\":\"success\",\"data\":{\"resultType\":\"bogus\",\"result\":[]}}";
+
+  private MockWebServer server;
+  private LokiClient client;
+
+  @BeforeEach
+  void setup() throws IOException {
+    server = new MockWebServer();
+    server.start();
+    RetryPolicy retryPolicy =
+        new ExponentialBackoffRetryPolicy(Duration.ofMillis(1), Duration.ofMillis(10), 3);
+    client =
+        new LokiClient(
+            LokiClientConfig.builder(server.url("/").uri()).retryPolicy(retryPolicy).build());
+  }
+
+  @AfterEach
+  void teardown() throws IOException {
+    server.shutdown();
+  }
+
+  @Test
+  void testRetryOn5xxAnd429() throws LokiClientException {
+    server.enqueue(new MockResponse().setResponseCode(503));
+    server.enqueue(new MockResponse().setResponseCode(429).setHeader("Retry-After", "0"));
+    server.enqueue(new MockResponse().setBody(EMPTY_STREAMS));
+
+    var result = client.rangeQuery("{app=\"foo\"}", Instant.now().minusSeconds(60), Instant.now());
+    assertThat(result.getData().getResult()).isInstanceOf(Streams.class);
+    assertThat(server.getRequestCount()).isEqualTo(3);
+  }
+
+  @Test
+  void testGiveUpAfterMaxAttempts() {
+    for (int i = 0; i < 3; i++) {
+      server.enqueue(new MockResponse().setResponseCode(500));
+    }
+
+    assertThatThrownBy(() -> client.pushLogLine("line", Instant.now(), Map.of("app", "foo")))
+        .isInstanceOf(LokiClientException.class)
+        .extracting(e -> ((LokiClientException) e).getStatusCode())
+        .isEqualTo(500);
+    assertThat(server.getRequestCount()).isEqualTo(3);
+  }
+
+  @Test
+  void testFailFastOnLongRetryAfter() {
+    server.enqueue(new MockResponse().setResponseCode(429).setHeader("Retry-After", "3600"));
+
+    assertThatThrownBy(() -> client.pushLogLine("line", Instant.now(), Map.of("app", "foo")))
+        .isInstanceOf(LokiClientException.class)
+        .extracting(e -> ((LokiClientException) e).getRetryAfter())
+        .isEqualTo(Optional.of(Duration.ofHours(1)));
+    assertThat(server.getRequestCount()).isEqualTo(1);
+  }
+
+  @Test
+  void testRetryAfterUpToMaxDelay() {
+    RetryPolicy policy =
+        new ExponentialBackoffRetryPolicy(Duration.ofMillis(1), Duration.ofSeconds(10), 3);
+
+    assertThat(policy.nextDelay(1, new LokiClientException("", 503, Duration.ofSeconds(10))))
+        .contains(Duration.ofSeconds(10));
+    assertThat(policy.nextDelay(1, new LokiClientException("", 503, Duration.ofSeconds(11))))
+        .isEmpty();
+  }
+
+  @Test
+  void testNoRetryOnRejectedPush() {
+    server.enqueue(new MockResponse().setResponseCode(400).setBody("entry out of order"));
+
+    assertThatThrownBy(() -> client.pushLogLine("line", Instant.now(), Map.of("app", "foo")))
+        .isInstanceOf(LokiClientException.class)
+        .hasMessageContaining("entry out of order");
+    assertThat(server.getRequestCount()).isEqualTo(1);
+  }
+
+  @Test
+  void testNoRetryOnMalformedResponse() {
+    for (int i = 0; i < 3; i++) {
+      server.enqueue(new MockResponse().setBody(MALFORMED));
+    }
+
+    assertThatThrownBy(
+            () -> client.rangeQuery("{app=\"foo\"}", Instant.now().minusSeconds(60), Instant.now()))
+        .isInstanceOf(LokiClientException.class);
+    assertThat(server.getRequestCount()).isEqualTo(1);
+  }
+
+  @Test
+  void testRateLimiterBacksOff() throws IOException, LokiClientException {
+    AdaptiveRateLimiter limiter = new AdaptiveRateLimiter(1, 1000);
+    LokiClient limited =
+        new LokiClient(
+            LokiClientConfig.builder(server.url("/").uri()).pushRateLimiter(limiter).build());
+    server.enqueue(new MockResponse().setResponseCode(429));
+    server.enqueue(new MockResponse().setResponseCode(204));
+
+    assertThatThrownBy(() -> limited.pushLogLine("line", Instant.now(), Map.of("app", "foo")))
+        .isInstanceOf(LokiClientException.class);
+    assertThat(limiter.getRate()).isEqualTo(500);
+    limited.pushLogLine("line", Instant.now(), Map.of("app", "foo"));
+    assertThat(limiter.getRate()).isGreaterThan(500);
+  }
+
+  @Test
+  void testRetryAsync() throws Exception {
+    server.enqueue(new MockResponse().setResponseCode(503));
+    server.enqueue(new MockResponse().setBody(EMPTY_STREAMS));
+
+    var result =
+        client
+            .rangeQueryAsync(
+                "{app=\"foo\"}", Instant.now().minusSeconds(60), Instant.now(), Runnable::run)
+            .get(5, TimeUnit.SECONDS);
+    assertThat(result.getData().getResult()).isInstanceOf(Streams.class);
+    assertThat(server.getRequestCount()).isEqualTo(2);
+  }
+
+  @Test
+  void testGiveUpAfterMaxAttemptsAsync() {
+    for (int i = 0; i < 3; i++) {
+      server.enqueue(new MockResponse().setResponseCode(500));
+    }
+
+    assertThatThrownBy(
+            () ->
+                client
+                    .pushLogLineAsync("line", Instant.now(), Map.of("app", "foo"), Runnable::run)
+                    .get(5, TimeUnit.SECONDS))
+        .isInstanceOf(ExecutionException.class)
+        .cause()
+        .isInstanceOf(LokiClientException.class)
+        .extracting(e -> ((LokiClientException) e).getStatusCode())
+        .isEqualTo(500);
+    assertThat(server.getRequestCount()).isEqualTo(3);
+  }
+
+  @Test
+  void testNoRetryOnMalformedResponseAsync() {
+    for (int i = 0; i < 3; i++) {
+      server.enqueue(new MockResponse().setBody(MALFORMED));
+    }
+
+    assertThatThrownBy(
+            () ->
+                client
+                    .rangeQueryAsync(
+                        "{app=\"foo\"}",
+                        Instant.now().minusSeconds(60),
+                        Instant.now(),
+                        Runnable::run)
+                    .get(5, TimeUnit.SECONDS))
+        .isInstanceOf(ExecutionException.class)
+        .cause()
+        .isInstanceOf(LokiClientException.class);
+    assertThat(server.getRequestCount()).isEqualTo(1);
+  }
+
+  @Test
+  void testRateLimiterBacksOffAsync() throws Exception {
+    AdaptiveRateLimiter limiter = new AdaptiveRateLimiter(1, 1000);
+    LokiClient limited =
+        new LokiClient(
+            LokiClientConfig.builder(server.url("/").uri()).pushRateLimiter(limiter).build());
+    server.enqueue(new MockResponse().setResponseCode(429));
+    server.enqueue(new MockResponse().setResponseCode(204));
+
+    var rejected =
+        limited.pushLogLineAsync("line", Instant.now(), Map.of("app", "foo"), Runnable::run);
+    assertThatThrownBy(() -> rejected.get(5, TimeUnit.SECONDS))
+        .isInstanceOf(ExecutionException.class);
+    assertThat(limiter.getRate()).isEqualTo(500);
+    limited
+        .pushLogLineAsync("line", Instant.now(), Map.of("app", "foo"), Runnable::run)
+        .get(5, TimeUnit.SECONDS);
+    assertThat(limiter.getRate()).isGreaterThan(500);
+  }
+}
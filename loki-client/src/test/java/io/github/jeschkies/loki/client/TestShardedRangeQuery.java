@@ -0,0 +1,186 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.jeschkies.loki.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.github.jeschkies.loki.client.model.Data;
+import io.github.jeschkies.loki.client.model.LogEntry;
+import io.github.jeschkies.loki.client.model.Matrix;
+import io.github.jeschkies.loki.client.model.QueryResult;
+import io.github.jeschkies.loki.client.model.Streams;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import okhttp3.HttpUrl;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class TestShardedRangeQuery {
+  private static final long SECOND = 1_000_000_000L;
+  private static final Duration STEP = Duration.ofSeconds(10);
+
+  /**
+   * Answers log queries with an entry every 10 seconds and metric queries with a point every step,
+   * both with start and end inclusive.
+   */
+  private static class RangeDispatcher extends Dispatcher {
+    final BlockingQueue<HttpUrl> requests = new LinkedBlockingQueue<>();
+
+    @Override
+    public MockResponse dispatch(RecordedRequest request) {
+      HttpUrl url = request.getRequestUrl();
+      requests.add(url);
+      long start = Long.parseLong(url.queryParameter("start"));
+      long end = Long.parseLong(url.queryParameter("end"));
+      StringJoiner values = new StringJoiner(",");
+      boolean metric = url.queryParameter("query").startsWith("rate(");
+      long interval = 10 * SECOND;
+      for (long ts = Math.ceilDiv(start, interval) * interval; ts <= end; ts += interval) {
+        values.add(
+            metric
+                ? "[" + ts / SECOND + ",\"1\"]"
+                : "[\"" + ts + "\",\"line " + ts / SECOND + "\"]");
+      }
+      String result =
+          metric
+              ? "\"matrix\",\"result\":[{\"metric\":{\"app\":\"foo\"},\"values\":["
+              : "\"streams\",\"result\":[{\"stream\":{\"app\":\"foo\"},\"values\":[";
+      return new MockResponse()
+          .setBody(
+              "{\"status\":\"success\",\"data\":{\"resultType\":" + result + values + "]}]}}");
+    }
+  }
+
+  private MockWebServer server;
+  private RangeDispatcher dispatcher;
+  private LokiClient client;
+
+  @BeforeEach
+  void setup() throws IOException {
+    server = new MockWebServer();
+    dispatcher = new RangeDispatcher();
+    server.setDispatcher(dispatcher);
+    server.start();
+    client = new LokiClient(new LokiClientConfig(server.url("/").uri(), null));
+  }
+
+  @AfterEach
+  void teardown() throws IOException {
+    server.shutdown();
+  }
+
+  @Test
+  void testShardBoundariesAreWholeSteps() throws Exception {
+    QueryResult result =
+        client.shardedRangeQuery("{app=\"foo\"}", at(0), at(100), STEP, 0, 4, Runnable::run);
+
+    // 100 seconds in 4 shards are 3 steps per shard.
+    assertThat(dispatcher.requests)
+        .extracting(url -> url.queryParameter("start") + "-" + url.queryParameter("end"))
+        .containsExactly(
+            "0-30000000000",
+            "30000000000-60000000000",
+            "60000000000-90000000000",
+            "90000000000-100000000000");
+    assertThat(dispatcher.requests).allMatch(url -> "10000ms".equals(url.queryParameter("step")));
+    // Entries on a boundary are only returned by the later shard.
+    assertThat(lines(result))
+        .extracting(LogEntry::getLine)
+        .containsExactly(
+            "line 0", "line 10", "line 20", "line 30", "line 40", "line 50", "line 60", "line 70",
+            "line 80", "line 90", "line 100");
+  }
+
+  @Test
+  void testLimitAppliesToMergedResult() throws Exception {
+    QueryResult result =
+        client.shardedRangeQuery("{app=\"foo\"}", at(0), at(100), STEP, 4, 4, Runnable::run);
+
+    assertThat(dispatcher.requests).allMatch(url -> "4".equals(url.queryParameter("limit")));
+    assertThat(lines(result))
+        .extracting(LogEntry::getLine)
+        .containsExactly("line 0", "line 10", "line 20", "line 30");
+  }
+
+  @Test
+  void testMergeMetricPointsOnBoundaries() throws Exception {
+    QueryResult result =
+        client.shardedRangeQuery(
+            "rate({app=\"foo\"}[1m])", at(0), at(100), STEP, 0, 3, Runnable::run);
+
+    assertThat(dispatcher.requests).hasSize(3);
+    Matrix matrix = (Matrix) result.getData().getResult();
+    assertThat(matrix.getMetrics()).hasSize(1);
+    assertThat(matrix.getMetrics().getFirst().timestamps())
+        .containsExactly(0, 10, 20, 30, 40, 50, 60, 70, 80, 90, 100);
+  }
+
+  @Test
+  void testEmptyRangeIsOneQuery() throws Exception {
+    QueryResult result =
+        client.shardedRangeQuery(
+            "rate({app=\"foo\"}[1m])", at(50), at(50), STEP, 0, 4, Runnable::run);
+
+    assertThat(dispatcher.requests).hasSize(1);
+    assertThat(result.getData().getResultType()).isEqualTo(Data.ResultType.Matrix);
+  }
+
+  @Test
+  void testRejectSubSecondStep() {
+    assertThatThrownBy(
+            () ->
+                client.shardedRangeQuery(
+                    "rate({app=\"foo\"}[1m])",
+                    at(0),
+                    at(100),
+                    Duration.ofMillis(500),
+                    0,
+                    4,
+                    Runnable::run))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(
+            () ->
+                client.shardedRangeQuery(
+                    "rate({app=\"foo\"}[1m])",
+                    at(0),
+                    at(100),
+                    Duration.ofMillis(1500),
+                    0,
+                    4,
+                    Runnable::run))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThat(dispatcher.requests).isEmpty();
+  }
+
+  private static Instant at(long seconds) {
+    return Instant.ofEpochSecond(seconds);
+  }
+
+  private static List<LogEntry> lines(QueryResult result) {
+    List<Streams.Stream> streams = ((Streams) result.getData().getResult()).getStreams();
+    assertThat(streams).hasSize(1);
+    return streams.getFirst().values();
+  }
+}
@@ -0,0 +1,64 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.jeschkies.loki.client.model;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.google.common.io.Resources;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+public class TestLabelSet {
+  @Test
+  void testLabelSetIsAMap() {
+    Map<String, String> labels = new LinkedHashMap<>();
+    labels.put("job", "loki");
+    labels.put("app", "foo");
+    LabelSet labelSet = LabelSet.of(labels);
+
+    assertThat(labelSet).isEqualTo(labels);
+    assertThat(labels).isEqualTo(labelSet);
+    assertThat(labelSet.hashCode()).isEqualTo(labels.hashCode());
+    assertThat(labelSet.keySet()).containsExactly("app", "job");
+    assertThat(labelSet.get("job")).isEqualTo("loki");
+    assertThat(labelSet.get("missing")).isNull();
+  }
+
+  @Test
+  void testIntern() {
+    LabelSetInterner interner = new LabelSetInterner(10);
+    LabelSet first = interner.intern(Map.of("app", "foo", "job", "loki"));
+    LabelSet second = interner.intern(new LinkedHashMap<>(Map.of("job", "loki", "app", "foo")));
+
+    assertThat(second).isSameAs(first);
+    assertThat(interner.size()).isEqualTo(1);
+
+    LabelSet other = interner.intern(Map.of("app", "foo", "job", "mimir"));
+    assertThat(other).isNotSameAs(first).containsEntry("job", "mimir");
+    assertThat(interner.intern(first)).isSameAs(first);
+    assertThat(interner.size()).isEqualTo(2);
+  }
+
+  @Test
+  void testDeserializedLabelsAreShared() throws IOException {
+    QueryResult first = QueryResult.fromJSON(Resources.getResource("streams.json").openStream());
+    QueryResult second = QueryResult.fromJSON(Resources.getResource("streams.json").openStream());
+
+    var firstLabels = ((Streams) first.getData().getResult()).getStreams().getFirst().labels();
+    var secondLabels = ((Streams) second.getData().getResult()).getStreams().getFirst().labels();
+    assertThat(secondLabels).isSameAs(firstLabels);
+  }
+}
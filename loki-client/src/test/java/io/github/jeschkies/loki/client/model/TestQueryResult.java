@@ -14,12 +14,17 @@
 package io.github.jeschkies.loki.client.model;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.google.common.io.Resources;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.Test;
 
@@ -72,5 +77,106 @@ public class TestQueryResult {
     var metrics = ((Matrix) result.getData().getResult()).getMetrics();
     assertThat(metrics).hasSize(4);
     assertThat(metrics.getFirst().values()).hasSize(22);
+    assertThat(metrics.getFirst().timestamps()).hasSize(22).startsWith(1722871416L);
+    assertThat(metrics.getFirst().samples()).hasSize(22).startsWith(1127.0);
+  }
+
+  @Test
+  void testDeserializeValues() throws IOException {
+    String json =
+        "{\"status\":\"success\",\"data\":{\"resultType\":\"matrix\",\"result\":["
+            + "{\"metric\":{\"level\":\"error\"},"
+            + "\"values\":[[1722871416,\"1127.5\"],[1722871430,\"+Inf\"]]}]}}";
+    final InputStream input = new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    QueryResult result = QueryResult.fromJSON(input);
+
+    var values = ((Matrix) result.getData().getResult()).getMetrics().getFirst().values();
+    assertThat(values.getFirst().getTs()).isEqualTo(1722871416L);
+    assertThat(values.getFirst().getValue()).isEqualTo(1127.5);
+    assertThat(values.getLast().getValue()).isEqualTo(Double.POSITIVE_INFINITY);
+
+    json =
+        "{\"status\":\"success\",\"data\":{\"resultType\":\"streams\",\"result\":["
+            + "{\"stream\":{\"app\":\"foo\"},"
+            + "\"values\":[[\"1722876490884664050\",\"line\",{\"trace\":\"x\"}]]}]}}";
+    result = QueryResult.fromJSON(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+
+    var streams = ((Streams) result.getData().getResult()).getStreams();
+    var entry = streams.getFirst().values().getFirst();
+    assertThat(entry.getTs()).isEqualTo(1722876490884664050L);
+    assertThat(entry.getLine()).isEqualTo("line");
+  }
+
+  @Test
+  void testDeserializeVector() throws IOException {
+    String json =
+        "{\"status\":\"success\",\"data\":{\"resultType\":\"vector\",\"result\":["
+            + "{\"metric\":{\"level\":\"error\"},\"value\":[1722871416.5,\"1127.5\"]}]}}";
+    QueryResult result =
+        QueryResult.fromJSON(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+
+    assertThat(result.getData().getResultType()).isEqualTo(Data.ResultType.Vector);
+    var samples = ((Vector) result.getData().getResult()).getSamples();
+    assertThat(samples)
+        .containsExactly(
+            new Vector.Sample(
+                Map.of("level", "error"), Instant.ofEpochSecond(1722871416, 500_000_000), 1127.5));
+  }
+
+  @Test
+  void testDeserializeScalar() throws IOException {
+    String json =
+        "{\"status\":\"success\",\"data\":{\"resultType\":\"scalar\","
+            + "\"result\":[1722871416.123,\"NaN\"]}}";
+    QueryResult result =
+        QueryResult.fromJSON(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+
+    assertThat(result.getData().getResultType()).isEqualTo(Data.ResultType.Scalar);
+    var scalar = (Scalar) result.getData().getResult();
+    assertThat(scalar.getTime()).isEqualTo(Instant.ofEpochSecond(1722871416, 123_000_000));
+    assertThat(scalar.getValue()).isNaN();
+  }
+
+  @Test
+  void testDeserializeStringTime() throws IOException {
+    String json =
+        "{\"status\":\"success\",\"data\":{\"resultType\":\"scalar\","
+            + "\"result\":[\"1722871416.000000001\",\"1\"]}}";
+    QueryResult result =
+        QueryResult.fromJSON(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+
+    var scalar = (Scalar) result.getData().getResult();
+    assertThat(scalar.getTime()).isEqualTo(Instant.ofEpochSecond(1722871416, 1));
+  }
+
+  @Test
+  void testDeserializeNanosecondTimestamps() throws IOException {
+    String json =
+        "{\"status\":\"success\",\"data\":{\"resultType\":\"streams\",\"result\":["
+            + "{\"stream\":{\"app\":\"foo\"},"
+            + "\"values\":[[\"9223372036854775807\",\"max\"],"
+            + "[\"1722876490884664050\",\"now\"]]}]}}";
+    QueryResult result =
+        QueryResult.fromJSON(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+
+    var values = ((Streams) result.getData().getResult()).getStreams().getFirst().values();
+    assertThat(values.getFirst().ts()).isEqualTo(Long.MAX_VALUE);
+    assertThat(values.getLast().ts()).isEqualTo(1722876490884664050L);
+  }
+
+  @Test
+  void testRejectInvalidTimestamps() {
+    for (String ts : List.of("9223372036854775808", "17228764908846640501", "1722x", "")) {
+      String json =
+          "{\"status\":\"success\",\"data\":{\"resultType\":\"streams\",\"result\":["
+              + "{\"stream\":{\"app\":\"foo\"},\"values\":[[\""
+              + ts
+              + "\",\"line\"]]}]}}";
+      assertThatThrownBy(
+              () ->
+                  QueryResult.fromJSON(
+                      new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8))))
+          .isInstanceOf(JsonProcessingException.class);
+    }
   }
 }
@@ -0,0 +1,160 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.jeschkies.loki.client.model;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.google.common.io.Resources;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+public class TestQueryResultReader {
+  private static class CountingVisitor implements QueryResultVisitor {
+    final List<Map<String, String>> labels = new ArrayList<>();
+    final List<Integer> counts = new ArrayList<>();
+    int current = 0;
+
+    @Override
+    public void startStream(Map<String, String> labels) {
+      this.labels.add(labels);
+      current = 0;
+    }
+
+    @Override
+    public void logEntry(long ts, String line) {
+      current++;
+    }
+
+    @Override
+    public void endStream() {
+      counts.add(current);
+    }
+
+    @Override
+    public void startMetric(Map<String, String> labels) {
+      startStream(labels);
+    }
+
+    @Override
+    public void metricPoint(long ts, double value) {
+      current++;
+    }
+
+    @Override
+    public void endMetric() {
+      endStream();
+    }
+  }
+
+  @Test
+  void testReadStreams() throws IOException {
+    final InputStream input =
+        Resources.asByteSource(Resources.getResource("streams.json")).openStream();
+    CountingVisitor visitor = new CountingVisitor();
+
+    assertThat(QueryResultReader.read(input, visitor)).isEqualTo(Data.ResultType.Streams);
+    assertThat(visitor.counts).hasSize(3);
+    assertThat(visitor.counts.getFirst()).isEqualTo(89);
+    assertThat(visitor.labels.getFirst()).containsEntry("compose_service", "grafana");
+  }
+
+  @Test
+  void testReadMatrix() throws IOException {
+    final InputStream input =
+        Resources.asByteSource(Resources.getResource("matrix.json")).openStream();
+    CountingVisitor visitor = new CountingVisitor();
+
+    assertThat(QueryResultReader.read(input, visitor)).isEqualTo(Data.ResultType.Matrix);
+    assertThat(visitor.counts).hasSize(4);
+    assertThat(visitor.counts.getFirst()).isEqualTo(22);
+    assertThat(visitor.labels.getFirst()).containsEntry("level", "error");
+  }
+
+  @Test
+  void testReadEntries() throws IOException {
+    String json =
+        "{\"status\":\"success\",\"data\":{\"resultType\":\"streams\",\"result\":[{\"stream\":"
+            + "{\"app\":\"foo\"},\"values\":[[\"1\",\"a\"],[\"2\",\"b\",{\"trace\":\"x\"}]]}]}}";
+    final InputStream input = new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    List<String> entries = new ArrayList<>();
+    QueryResultReader.read(
+        input,
+        new QueryResultVisitor() {
+          @Override
+          public void logEntry(long ts, String line) {
+            entries.add(ts + " " + line);
+          }
+        });
+
+    assertThat(entries).containsExactly("1 a", "2 b");
+  }
+
+  @Test
+  void testReadFractionalVectorTime() throws IOException {
+    String json =
+        "{\"status\":\"success\",\"data\":{\"resultType\":\"vector\",\"result\":["
+            + "{\"metric\":{\"level\":\"error\"},\"value\":[\"1700000000.123\",\"3\"]}]}}";
+    List<Instant> times = new ArrayList<>();
+    QueryResultReader.read(
+        new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)),
+        new QueryResultVisitor() {
+          @Override
+          public void metricPoint(Instant time, double value) {
+            times.add(time);
+          }
+        });
+
+    assertThat(times).containsExactly(Instant.ofEpochSecond(1700000000, 123_000_000));
+  }
+
+  @Test
+  void testReadVectorAndScalar() throws IOException {
+    String json =
+        "{\"status\":\"success\",\"data\":{\"resultType\":\"vector\",\"result\":["
+            + "{\"metric\":{\"level\":\"error\"},\"value\":[1722871416.5,\"3\"]},"
+            + "{\"metric\":{\"level\":\"info\"},\"value\":[1722871416.5,\"7\"]}]}}";
+    CountingVisitor visitor = new CountingVisitor();
+
+    assertThat(
+            QueryResultReader.read(
+                new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), visitor))
+        .isEqualTo(Data.ResultType.Vector);
+    assertThat(visitor.counts).containsExactly(1, 1);
+    assertThat(visitor.labels.getLast()).containsEntry("level", "info");
+
+    json =
+        "{\"status\":\"success\",\"data\":{\"resultType\":\"scalar\","
+            + "\"result\":[1722871416.5,\"42\"]}}";
+    List<String> values = new ArrayList<>();
+    Data.ResultType resultType =
+        QueryResultReader.read(
+            new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)),
+            new QueryResultVisitor() {
+              @Override
+              public void scalar(Instant time, double value) {
+                values.add(time + " " + value);
+              }
+            });
+
+    assertThat(resultType).isEqualTo(Data.ResultType.Scalar);
+    assertThat(values).containsExactly("2024-08-05T15:23:36.500Z 42.0");
+  }
+}
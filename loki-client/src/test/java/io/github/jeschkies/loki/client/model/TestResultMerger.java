@@ -0,0 +1,86 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.jeschkies.loki.client.model;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+public class TestResultMerger {
+  @Test
+  void testMergeStreams() {
+    Streams first = streams(new Streams.Stream(Map.of("app", "foo"), entries(1, 3, 5)));
+    Streams second =
+        streams(
+            new Streams.Stream(Map.of("app", "foo"), entries(2, 4)),
+            new Streams.Stream(Map.of("app", "bar"), entries(6)));
+
+    var merged = ResultMerger.mergeStreams(List.of(first, second)).getStreams();
+    assertThat(merged).hasSize(2);
+    assertThat(merged.getFirst().labels()).isEqualTo(Map.of("app", "foo"));
+    assertThat(merged.getFirst().values())
+        .extracting(LogEntry::getTs)
+        .containsExactly(1L, 2L, 3L, 4L, 5L);
+    assertThat(merged.getLast().values()).extracting(LogEntry::getTs).containsExactly(6L);
+  }
+
+  @Test
+  void testMergeMatrices() {
+    Matrix first = matrix(new Matrix.Metric(Map.of("level", "error"), points(10, 20, 30)));
+    Matrix second = matrix(new Matrix.Metric(Map.of("level", "error"), points(30, 40)));
+
+    var merged = ResultMerger.mergeMatrices(List.of(second, first)).getMetrics();
+    assertThat(merged).hasSize(1);
+    assertThat(merged.getFirst().values())
+        .extracting(MetricPoint::getTs)
+        .containsExactly(10L, 20L, 30L, 40L);
+  }
+
+  private static Streams streams(Streams.Stream... streams) {
+    Streams result = new Streams();
+    result.setStreams(List.of(streams));
+    return result;
+  }
+
+  private static Matrix matrix(Matrix.Metric... metrics) {
+    Matrix result = new Matrix();
+    result.setMetrics(List.of(metrics));
+    return result;
+  }
+
+  private static List<LogEntry> entries(long... timestamps) {
+    List<LogEntry> entries = new ArrayList<>();
+    for (long ts : timestamps) {
+      LogEntry entry = new LogEntry();
+      entry.setTs(ts);
+      entry.setLine("line " + ts);
+      entries.add(entry);
+    }
+    return entries;
+  }
+
+  private static List<MetricPoint> points(long... timestamps) {
+    List<MetricPoint> points = new ArrayList<>();
+    for (long ts : timestamps) {
+      MetricPoint point = new MetricPoint();
+      point.setTs(ts);
+      point.setValue((double) ts);
+      points.add(point);
+    }
+    return points;
+  }
+}
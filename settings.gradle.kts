@@ -1,3 +1,8 @@
 rootProject.name = "loki-client-root"
-include("loki-client", "loki-client-testutils")
-
+include(
+    "loki-client",
+    "loki-client-testutils",
+    "loki-client-benchmarks",
+    "loki-client-micrometer",
+    "loki-client-appender",
+)